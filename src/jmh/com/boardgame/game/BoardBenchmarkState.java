@@ -0,0 +1,146 @@
+package com.boardgame.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Random;
+
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.boardgame.game.AbstractActionToken.TokenString;
+import com.boardgame.game.Location.Terrain;
+
+/**
+ * A generated board and scenario, loaded through GameStateLoader, with
+ * tokens placed on a fraction of the owned locations. Every benchmark thread
+ * gets its own game, since several benchmarks modify it.
+ *
+ */
+@State(Scope.Thread)
+public class BoardBenchmarkState {
+	@Param({"1000", "10000", "100000"})
+	int numLocations;
+	
+	@Param({"0.3"})
+	double seaDensity;
+	
+	@Param({"0.05"})
+	double portDensity;
+	
+	@Param({"0.5"})
+	double occupiedDensity;
+	
+	@Param({"0.5"})
+	double tokenDensity;
+	
+	GameState gameState;
+	Game game;
+	
+	//owned land locations with units, and a location each may move to
+	Location[] moveSources;
+	Location[] moveTargets;
+	Location[] tokenLocations;
+	
+	private int nextMove;
+	private int nextToken;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+			throws IOException, ParseException, SchemaMatchingException {
+		File boardFile = File.createTempFile("board", ".json");
+		File scenarioFile = File.createTempFile("scenario", ".json");
+		
+		try {
+			ScenarioGenerator generator = new ScenarioGenerator(numLocations,
+					seaDensity, portDensity, occupiedDensity, 4, numLocations);
+			generator.writeBoard(boardFile);
+			generator.writeScenario(scenarioFile);
+			
+			gameState = GameStateLoader.load(boardFile.getPath(),
+					scenarioFile.getPath());
+		}
+		finally {
+			boardFile.delete();
+			scenarioFile.delete();
+		}
+		
+		placeTokens();
+		findMoves();
+		
+		game = new Game(gameState);
+	}
+	
+	private void placeTokens() {
+		List<AbstractActionToken> tokens = new ArrayList<>(
+				new EnumMap<TokenString, AbstractActionToken>(
+						gameState.getTokenStringsToTokens()).values());
+		List<Location> result = new ArrayList<>();
+		Random random = new Random(numLocations);
+		
+		for (Location location : gameState.getLocations()) {
+			if (location.getOwner() == null ||
+					random.nextDouble() >= tokenDensity) {
+				continue;
+			}
+			
+			location.placeActionToken(tokens.get(random.nextInt(tokens.size())));
+			result.add(location);
+		}
+		
+		tokenLocations = result.toArray(new Location[result.size()]);
+	}
+	
+	private void findMoves() {
+		BoardGraph board = gameState.getBoard();
+		List<Location> sources = new ArrayList<>();
+		List<Location> targets = new ArrayList<>();
+		
+		for (Location source : gameState.getLocations()) {
+			if (source.getTerrain() != Terrain.LAND || !source.hasUnits()) {
+				continue;
+			}
+			
+			int index = source.getIndex();
+			
+			for (int k = board.getAdjacencyStart(index);
+					k < board.getAdjacencyEnd(index); k++) {
+				Location target = gameState.getLocation(board.getAdjacentIndex(k));
+				
+				if (target.getTerrain() == Terrain.LAND &&
+						(target.getOwner() == null ||
+						target.getOwner() == source.getOwner())) {
+					sources.add(source);
+					targets.add(target);
+					break;
+				}
+			}
+		}
+		
+		moveSources = sources.toArray(new Location[sources.size()]);
+		moveTargets = targets.toArray(new Location[targets.size()]);
+	}
+	
+	/**
+	 * @return the index, in moveSources and moveTargets, of the next move to
+	 * measure, cycling through all of them
+	 */
+	int nextMove() {
+		nextMove = nextMove + 1 == moveSources.length ? 0 : nextMove + 1;
+		return nextMove;
+	}
+	
+	/**
+	 * @return the next location with a token, cycling through all of them
+	 */
+	Location nextTokenLocation() {
+		nextToken = nextToken + 1 == tokenLocations.length ? 0 : nextToken + 1;
+		return tokenLocations[nextToken];
+	}
+}
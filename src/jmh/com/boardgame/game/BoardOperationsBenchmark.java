@@ -0,0 +1,66 @@
+package com.boardgame.game;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the supply and ship transport queries of BoardOperations on
+ * generated boards. Run with "-prof gc" for allocation per operation.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardOperationsBenchmark {
+	@State(Scope.Thread)
+	public static class Scratch {
+		BitSet accessibleLocations;
+		
+		@Setup(Level.Trial)
+		public void setUp(BoardBenchmarkState board) {
+			accessibleLocations = new BitSet(board.numLocations);
+		}
+	}
+	
+	@Benchmark
+	public boolean checkSupplyForMove(BoardBenchmarkState board) {
+		int move = board.nextMove();
+		
+		return BoardOperations.checkSupplyForMove(board.gameState,
+				board.moveSources[move], board.moveTargets[move], 1);
+	}
+	
+	@Benchmark
+	public int findMaxMovableUnits(BoardBenchmarkState board) {
+		int move = board.nextMove();
+		
+		return BoardOperations.findMaxMovableUnits(board.gameState,
+				board.moveSources[move], board.moveTargets[move]);
+	}
+	
+	@Benchmark
+	public int findAdjacentAndShipAccessibleLocations(BoardBenchmarkState board,
+			Scratch scratch) {
+		BitSet accessibleLocations = scratch.accessibleLocations;
+		accessibleLocations.clear();
+		
+		BoardOperations.findAdjacentAndShipAccessibleLocations(board.gameState,
+				board.moveSources[board.nextMove()], accessibleLocations);
+		
+		return accessibleLocations.cardinality();
+	}
+}
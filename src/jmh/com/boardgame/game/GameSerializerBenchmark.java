@@ -0,0 +1,53 @@
+package com.boardgame.game;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the JSON and binary serializations of GameSerializer on
+ * generated boards.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameSerializerBenchmark {
+	@State(Scope.Thread)
+	public static class Encoded {
+		byte[] bytes;
+		
+		@Setup(Level.Trial)
+		public void setUp(BoardBenchmarkState board) {
+			bytes = GameSerializer.serializeGameState(board.gameState);
+		}
+	}
+	
+	@Benchmark
+	public String serializeToJson(BoardBenchmarkState board) {
+		return GameSerializer.serializeGameStateToJson(board.gameState);
+	}
+	
+	@Benchmark
+	public byte[] serialize(BoardBenchmarkState board) {
+		return GameSerializer.serializeGameState(board.gameState);
+	}
+	
+	@Benchmark
+	public GameState deserialize(Encoded encoded) throws IOException {
+		return GameSerializer.deserializeGameState(encoded.bytes);
+	}
+}
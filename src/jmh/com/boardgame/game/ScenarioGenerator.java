@@ -0,0 +1,365 @@
+package com.boardgame.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import com.boardgame.game.AbstractUnit.UnitString;
+import com.boardgame.game.Location.Terrain;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes synthetic board and scenario files, matching boardSchema.json and
+ * standardGame6Schema.json, for boards of arbitrary size. Locations are laid
+ * out on a grid, each adjacent to its right and lower neighbours, with
+ * random extra adjacencies.
+ *
+ */
+final class ScenarioGenerator {
+	private static final int MAX_BASE_SIZE = 2;
+	private static final int MAX_SUPPLY = 2;
+	private static final int MAX_INVEST = 2;
+	private static final double BASE_DENSITY = 0.2;
+	private static final double EXTRA_ADJACENCY_DENSITY = 0.1;
+	private static final int NUM_COMBAT_CARDS = 3;
+	private static final int NUM_EVENT_CARDS = 2;
+	
+	private final int numLocations;
+	private final double seaDensity;
+	private final double portDensity;
+	private final double occupiedDensity;
+	private final int maxUnitsPerLocation;
+	private final long seed;
+	
+	private final Terrain[] terrains;
+	private final boolean[] hasBase;
+	
+	/**
+	 * @param numLocations  the number of locations on the board, positive
+	 * @param seaDensity  the fraction of locations that are sea
+	 * @param portDensity  the fraction of locations that are ports
+	 * @param occupiedDensity  the fraction of locations that start with an
+	 * owner and units
+	 * @param maxUnitsPerLocation  the most units placed on one location,
+	 * positive
+	 * @param seed  the seed of the random layout
+	 */
+	ScenarioGenerator(int numLocations, double seaDensity, double portDensity,
+			double occupiedDensity, int maxUnitsPerLocation, long seed) {
+		assert numLocations > 0;
+		assert seaDensity >= 0 && portDensity >= 0 &&
+				seaDensity + portDensity <= 1;
+		assert occupiedDensity >= 0 && occupiedDensity <= 1;
+		assert maxUnitsPerLocation > 0;
+		
+		this.numLocations = numLocations;
+		this.seaDensity = seaDensity;
+		this.portDensity = portDensity;
+		this.occupiedDensity = occupiedDensity;
+		this.maxUnitsPerLocation = maxUnitsPerLocation;
+		this.seed = seed;
+		
+		this.terrains = new Terrain[numLocations];
+		this.hasBase = new boolean[numLocations];
+		
+		Random random = new Random(seed);
+		
+		for (int i = 0; i < numLocations; i++) {
+			double roll = random.nextDouble();
+			
+			if (roll < seaDensity) {
+				terrains[i] = Terrain.SEA;
+			}
+			else if (roll < seaDensity + portDensity) {
+				terrains[i] = Terrain.PORT;
+			}
+			else {
+				terrains[i] = Terrain.LAND;
+				hasBase[i] = random.nextDouble() < BASE_DENSITY;
+			}
+		}
+	}
+	
+	void writeBoard(File boardFile) throws IOException {
+		Random random = new Random(seed + 1);
+		int width = (int) Math.ceil(Math.sqrt(numLocations));
+		
+		try (JsonGenerator generator = createGenerator(boardFile)) {
+			generator.writeStartObject();
+			generator.writeArrayFieldStart("locations");
+			
+			for (int i = 0; i < numLocations; i++) {
+				generator.writeStartObject();
+				generator.writeStringField("name", "Location " + i);
+				generator.writeStringField("terrain", terrains[i].toString());
+				
+				if (terrains[i] == Terrain.LAND) {
+					if (hasBase[i]) {
+						generator.writeObjectFieldStart("base");
+						generator.writeNumberField("size",
+								1 + random.nextInt(MAX_BASE_SIZE));
+						generator.writeEndObject();
+					}
+					
+					generator.writeNumberField("supply",
+							random.nextInt(MAX_SUPPLY + 1));
+					generator.writeNumberField("invest",
+							random.nextInt(MAX_INVEST + 1));
+				}
+				
+				generator.writeEndObject();
+			}
+			
+			generator.writeEndArray();
+			generator.writeArrayFieldStart("adjacencies");
+			
+			for (int i = 0; i < numLocations; i++) {
+				if ((i + 1) % width != 0 && i + 1 < numLocations) {
+					writeAdjacency(generator, i, i + 1);
+				}
+				
+				if (i + width < numLocations) {
+					writeAdjacency(generator, i, i + width);
+				}
+				
+				//diagonals never repeat a grid adjacency
+				if (i + width + 1 < numLocations && (i + 1) % width != 0 &&
+						random.nextDouble() < EXTRA_ADJACENCY_DENSITY) {
+					writeAdjacency(generator, i, i + width + 1);
+				}
+			}
+			
+			generator.writeEndArray();
+			generator.writeEndObject();
+		}
+	}
+	
+	void writeScenario(File scenarioFile) throws IOException {
+		Random random = new Random(seed + 2);
+		Faction[] factions = Faction.values();
+		
+		int expectedArmies = (int) Math.ceil(numLocations * occupiedDensity /
+				factions.length);
+		int baseSupplySlots = Math.max(2, expectedArmies);
+		
+		try (JsonGenerator generator = createGenerator(scenarioFile)) {
+			generator.writeStartObject();
+			
+			generator.writeObjectFieldStart("factionsToPlayers");
+			
+			for (Faction faction : factions) {
+				generator.writeObjectFieldStart(faction.toString());
+				writeIndexes(generator, "combatCardsInHand", NUM_COMBAT_CARDS);
+				writeIndexes(generator, "combatCardsDiscard", 0);
+				generator.writeArrayFieldStart("units");
+				generator.writeEndArray();
+				generator.writeNumberField("cashInHand", 5);
+				generator.writeNumberField("cashPool", 15);
+				generator.writeEndObject();
+			}
+			
+			generator.writeEndObject();
+			
+			writeFactions(generator, "turnOrder");
+			writeFactions(generator, "tieBreakingOrder");
+			writeFactions(generator, "specialTokenOrder");
+			
+			generator.writeArrayFieldStart("specialTokensPerPosition");
+			
+			for (int numSpecialTokens : new int[] {3, 3, 2, 1, 0, 0}) {
+				generator.writeNumber(numSpecialTokens);
+			}
+			
+			generator.writeEndArray();
+			
+			generator.writeObjectFieldStart("factionsToSupplyPositions");
+			
+			for (Faction faction : factions) {
+				generator.writeNumberField(faction.toString(), 1);
+			}
+			
+			generator.writeEndObject();
+			
+			//limits are unique per position because their lengths differ; half
+			//of them fit an army grown by one unit
+			generator.writeArrayFieldStart("supplyLimits");
+			
+			for (int position = 0; position < factions.length; position++) {
+				int numSlots = baseSupplySlots + position;
+				generator.writeStartArray();
+				
+				for (int slot = 0; slot < numSlots; slot++) {
+					generator.writeNumber(slot < numSlots / 2 ?
+							maxUnitsPerLocation + 1 : maxUnitsPerLocation);
+				}
+				
+				generator.writeEndArray();
+			}
+			
+			generator.writeEndArray();
+			
+			generator.writeObjectFieldStart("factionsToNumBases");
+			
+			for (Faction faction : factions) {
+				generator.writeNumberField(faction.toString(), 1);
+			}
+			
+			generator.writeEndObject();
+			
+			generator.writeNumberField("threatLevel", 0);
+			generator.writeNumberField("round", 1);
+			
+			generator.writeArrayFieldStart("locationAdditions");
+			
+			for (int i = 0; i < numLocations; i++) {
+				if (random.nextDouble() >= occupiedDensity) {
+					continue;
+				}
+				
+				generator.writeStartObject();
+				
+				if (hasBase[i]) {
+					generator.writeObjectFieldStart("base");
+					generator.writeNumberField("defense", 1 + random.nextInt(4));
+					generator.writeBooleanField("isDefenseActive", true);
+					generator.writeEndObject();
+				}
+				
+				Faction owner = factions[random.nextInt(factions.length)];
+				generator.writeStringField("owner", owner.toString());
+				
+				generator.writeArrayFieldStart("units");
+				int numUnits = 1 + random.nextInt(maxUnitsPerLocation);
+				
+				for (int u = 0; u < numUnits; u++) {
+					generator.writeString(findUnitString(terrains[i], random)
+							.toString());
+				}
+				
+				generator.writeEndArray();
+				generator.writeNumberField("targetLocation", i);
+				generator.writeEndObject();
+			}
+			
+			generator.writeEndArray();
+			
+			for (String deck : new String[] {"eventCards1", "eventCards2",
+					"eventCards3"}) {
+				writeIndexes(generator, deck + "Stack", NUM_EVENT_CARDS);
+				writeIndexes(generator, deck + "Discard", 0);
+				writeNamedCards(generator, deck, "Event card", NUM_EVENT_CARDS);
+			}
+			
+			writeIndexes(generator, "threatCardsStack", NUM_EVENT_CARDS);
+			writeIndexes(generator, "threatCardsDiscard", 0);
+			writeNamedCards(generator, "threatCards", "Threat card",
+					NUM_EVENT_CARDS);
+			
+			generator.writeArrayFieldStart("combatCards");
+			
+			for (int c = 0; c < NUM_COMBAT_CARDS; c++) {
+				generator.writeStartObject();
+				generator.writeStringField("name", "Combat card " + c);
+				generator.writeNumberField("strength", c);
+				generator.writeNumberField("killingPotential", c % 2);
+				generator.writeNumberField("deathDefense", (c + 1) % 2);
+				generator.writeEndObject();
+			}
+			
+			generator.writeEndArray();
+			
+			generator.writeBooleanField("hasCombatBonusBeenUsed", false);
+			generator.writeBooleanField("hasSightPowerBeenUsed", false);
+			generator.writeEndObject();
+		}
+	}
+	
+	private static UnitString findUnitString(Terrain terrain, Random random) {
+		if (terrain != Terrain.LAND) {
+			return UnitString.SHIP;
+		}
+		
+		return random.nextInt(3) == 0 ? UnitString.ADVANCED : UnitString.INFANTRY;
+	}
+	
+	private static JsonGenerator createGenerator(File file) throws IOException {
+		JsonGenerator generator =
+				new JsonFactory().createGenerator(file, JsonEncoding.UTF8);
+		generator.useDefaultPrettyPrinter();
+		return generator;
+	}
+	
+	private static void writeAdjacency(JsonGenerator generator, int indexA,
+			int indexB) throws IOException {
+		generator.writeStartArray();
+		generator.writeNumber(indexA);
+		generator.writeNumber(indexB);
+		generator.writeEndArray();
+	}
+	
+	private static void writeIndexes(JsonGenerator generator, String key,
+			int numIndexes) throws IOException {
+		generator.writeArrayFieldStart(key);
+		
+		for (int i = 0; i < numIndexes; i++) {
+			generator.writeNumber(i);
+		}
+		
+		generator.writeEndArray();
+	}
+	
+	private static void writeFactions(JsonGenerator generator, String key)
+			throws IOException {
+		generator.writeArrayFieldStart(key);
+		
+		for (Faction faction : Faction.values()) {
+			generator.writeString(faction.toString());
+		}
+		
+		generator.writeEndArray();
+	}
+	
+	private static void writeNamedCards(JsonGenerator generator, String key,
+			String namePrefix, int numCards) throws IOException {
+		generator.writeArrayFieldStart(key);
+		
+		for (int i = 0; i < numCards; i++) {
+			generator.writeStartObject();
+			generator.writeStringField("name", namePrefix + " " + key + " #" + i);
+			generator.writeEndObject();
+		}
+		
+		generator.writeEndArray();
+	}
+	
+	/**
+	 * Writes a board and scenario pair.
+	 * Arguments: boardPath scenarioPath numLocations [seaDensity portDensity
+	 * occupiedDensity maxUnitsPerLocation seed]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: ScenarioGenerator boardPath scenarioPath "
+					+ "numLocations [seaDensity portDensity occupiedDensity "
+					+ "maxUnitsPerLocation seed]");
+			System.exit(1);
+		}
+		
+		int numLocations = Integer.parseInt(args[2]);
+		double seaDensity = args.length > 3 ? Double.parseDouble(args[3]) : 0.3;
+		double portDensity = args.length > 4 ? Double.parseDouble(args[4]) : 0.05;
+		double occupiedDensity =
+				args.length > 5 ? Double.parseDouble(args[5]) : 0.5;
+		int maxUnitsPerLocation =
+				args.length > 6 ? Integer.parseInt(args[6]) : 4;
+		long seed = args.length > 7 ? Long.parseLong(args[7]) : 0;
+		
+		ScenarioGenerator generator = new ScenarioGenerator(numLocations,
+				seaDensity, portDensity, occupiedDensity, maxUnitsPerLocation,
+				seed);
+		generator.writeBoard(new File(args[0]));
+		generator.writeScenario(new File(args[1]));
+	}
+}
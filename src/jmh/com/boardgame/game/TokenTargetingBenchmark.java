@@ -0,0 +1,69 @@
+package com.boardgame.game;
+
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures token targeting and the building of the action locations queue
+ * on generated boards. Run with "-prof gc" for allocation per operation.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenTargetingBenchmark {
+	@State(Scope.Thread)
+	public static class Scratch {
+		BitSet validLocationTargets;
+		
+		@Setup(Level.Trial)
+		public void setUp(BoardBenchmarkState board) {
+			validLocationTargets = new BitSet(board.numLocations);
+		}
+	}
+	
+	@Benchmark
+	public int findValidLocationTargets(BoardBenchmarkState board,
+			Scratch scratch) {
+		Location location = board.nextTokenLocation();
+		
+		location.getActionToken().findValidLocationTargets(board.gameState,
+				location, scratch.validLocationTargets);
+		
+		return scratch.validLocationTargets.cardinality();
+	}
+	
+	@Benchmark
+	public Set<Location> findValidLocationTargetsSet(BoardBenchmarkState board) {
+		return board.game.findValidLocationTargets(board.nextTokenLocation());
+	}
+	
+	@Benchmark
+	public LocationTargets findAllValidLocationTargets(
+			BoardBenchmarkState board) {
+		return board.game.findAllValidLocationTargets();
+	}
+	
+	@Benchmark
+	public Faction buildActionLocationsQueue(BoardBenchmarkState board) {
+		board.game.clearActionLocationsQueue();
+		board.game.buildActionLocationsQueue();
+		
+		return board.game.getCurrentFaction();
+	}
+}
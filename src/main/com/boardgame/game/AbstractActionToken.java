@@ -1,20 +1,25 @@
 package com.boardgame.game;
 
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.boardgame.game.Location.Terrain;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
 
 abstract class AbstractActionToken {
 	static final int UNUSABLE_MARKER = Integer.MAX_VALUE;
 	
+	//compiled terrain rules are shared by every token of a class
+	private static final ConcurrentMap<Class<?>, int[]> 
+		classesToValidTargetTerrainMasks = new ConcurrentHashMap<>();
+	
 	private final boolean isSpecial;
 	private final int priority;
 
-	private final Multimap<Terrain, Terrain> sourcesToValidTargets;
+	//indexed by source terrain ordinal
+	private final int[] validTargetTerrainMasks;
 	
 	enum TokenString {
 		BLANK, 
@@ -34,46 +39,93 @@ abstract class AbstractActionToken {
 	AbstractActionToken(boolean isSpecial, int priority) {
 		this.isSpecial = isSpecial;
 		this.priority = priority;
-		this.sourcesToValidTargets = findSourceTerrainsToValidTargetTerrains();
+		this.validTargetTerrainMasks = findValidTargetTerrainMasks();
 	}
 	
-	private Multimap<Terrain, Terrain> findSourceTerrainsToValidTargetTerrains() {
-		Multimap<Terrain, Terrain> sourcesToValidTargets = HashMultimap.create();
+	private int[] findValidTargetTerrainMasks() {
+		int[] masks = classesToValidTargetTerrainMasks.get(getClass());
+		
+		if (masks != null) {
+			return masks;
+		}
+		
+		masks = new int[Terrain.values().length];
 		
 		for (Terrain source : Terrain.values()) {
 			Set<Terrain> validTargets = getValidTargetTerrains(source);
 			assert validTargets != null;
 			
-			sourcesToValidTargets.putAll(source, validTargets);
+			for (Terrain target : validTargets) {
+				masks[source.ordinal()] |= BoardGraph.getTerrainMask(target);
+			}
 		}
 		
-		return sourcesToValidTargets;
+		int[] previousMasks = 
+				classesToValidTargetTerrainMasks.putIfAbsent(getClass(), masks);
+		
+		return previousMasks == null ? masks : previousMasks;
 	}
 	
+	/**
+	 * Must depend only on the class of the token, since the result is
+	 * compiled once per class.
+	 */
 	abstract Set<Terrain> getValidTargetTerrains(Terrain source);
 	
-	Set<Location> findValidLocationTargets(Location sourceLocation) {
+	private boolean isValidTargetTerrain(Terrain source, Terrain target) {
+		return (validTargetTerrainMasks[source.ordinal()] & 
+				BoardGraph.getTerrainMask(target)) != 0;
+	}
+	
+	/**
+	 * Replaces the contents of validLocationTargets with the indexes of the
+	 * locations that a token on sourceLocation may target.
+	 */
+	void findValidLocationTargets(GameState gameState, Location sourceLocation, 
+			BitSet validLocationTargets) {
+		assert gameState != null;
 		assert sourceLocation != null;
+		assert validLocationTargets != null;
 		
-		Set<Location> validLocationTargets = new HashSet<>();
+		validLocationTargets.clear();
+		findAccessibleTargets(gameState, sourceLocation, validLocationTargets);
 		
-		for (Location adjacentLocation : findAccessibleTargets(sourceLocation)) {
-			Terrain sourceTerrain = sourceLocation.getTerrain();
-			Collection<Terrain> validTerrains = sourcesToValidTargets.get(sourceTerrain);
-
-			Terrain adjacentTerrain = adjacentLocation.getTerrain();
-			
-			if (validTerrains.contains(adjacentTerrain) &&
-					isValidTargeting(sourceLocation, adjacentLocation)) {
-				validLocationTargets.add(adjacentLocation);
+		int terrainMask = 
+				validTargetTerrainMasks[sourceLocation.getTerrain().ordinal()];
+		validLocationTargets.and(
+				gameState.getBoard().getLocationsWithTerrains(terrainMask));
+		
+		for (int i = validLocationTargets.nextSetBit(0); i >= 0; 
+				i = validLocationTargets.nextSetBit(i + 1)) {
+			if (!isValidTargeting(sourceLocation, gameState.getLocation(i))) {
+				validLocationTargets.clear(i);
 			}
 		}
+	}
+	
+	Set<Location> findValidLocationTargets(GameState gameState, 
+			Location sourceLocation) {
+		BitSet validLocationTargets = 
+				new BitSet(gameState.getBoard().getNumLocations());
+		findValidLocationTargets(gameState, sourceLocation, validLocationTargets);
 		
-		return validLocationTargets;
+		return new LocationSetView(gameState.getLocations(), 
+				validLocationTargets);
 	}
 	
-	Set<Location> findAccessibleTargets(Location source) {
-		return source.getAdjacentLocations();
+	/**
+	 * Sets, in accessibleTargets, the index of every location that a token on
+	 * source can reach before terrain and targeting rules are applied.
+	 */
+	void findAccessibleTargets(GameState gameState, Location source, 
+			BitSet accessibleTargets) {
+		BoardGraph board = gameState.getBoard();
+		int sourceIndex = source.getIndex();
+		
+		for (int k = board.getAdjacencyStart(sourceIndex); 
+				k < board.getAdjacencyEnd(sourceIndex); k++) {
+			accessibleTargets.set(board.getAdjacentIndex(k));
+		}
 	}
 	
 	boolean act(Game game, Location source, Location target, Collection<AbstractUnit> unitsInvolved) {
@@ -85,9 +137,8 @@ abstract class AbstractActionToken {
 		
 		boolean success = false;
 		
-		Collection<Terrain> validTargets = sourcesToValidTargets.get(source.getTerrain());
-		
-		if (validTargets.contains(target.getTerrain()) && isValidTargeting(source, target)) {
+		if (isValidTargetTerrain(source.getTerrain(), target.getTerrain()) && 
+				isValidTargeting(source, target)) {
 			success = actSpecifically(game, source, target, unitsInvolved);
 		}
 		
@@ -1,10 +1,15 @@
 package com.boardgame.game;
 
+/**
+ * A type of unit. Instances are immutable and shared by every location and 
+ * every game; per-game state, such as which units are routed, is kept by 
+ * the locations holding them.
+ *
+ */
 abstract class AbstractUnit {
-	private int cost;
-	private boolean isRouted;
+	private final int cost;
 	
-	private UnitString unitString;
+	private final UnitString unitString;
 	
 	enum UnitString {
 		INFANTRY,
@@ -30,12 +35,8 @@ abstract class AbstractUnit {
 		return cost;
 	}
 	
-	boolean getIsRouted() {
-		return isRouted;
-	}
-	
-	void setIsRouted(boolean isRouted) {
-		this.isRouted = isRouted;
+	UnitString getUnitString() {
+		return unitString;
 	}
 	
 	@Override
@@ -1,5 +1,8 @@
 package com.boardgame.game;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -10,15 +13,23 @@ final class ActionLocations implements Comparable<ActionLocations> {
 	private final int tokenPriority;
 	
 	ActionLocations(Faction faction, int factionPriority, Location location) {
+		this(faction, factionPriority, location.getActionToken().getPriority(), 
+				1);
+		addLocation(location);
+	}
+	
+	/**
+	 * @param expectedNumLocations  the number of locations that will be added
+	 */
+	ActionLocations(Faction faction, int factionPriority, int tokenPriority, 
+			int expectedNumLocations) {
 		assert faction != null;
-		assert location != null;
-		assert location.getActionToken() != null;
+		assert expectedNumLocations >= 0;
 		
 		this.faction = faction;
 		this.factionPriority = factionPriority;
-		this.locations = new HashSet<>();
-		this.tokenPriority = location.getActionToken().getPriority();
-		addLocation(location);
+		this.locations = new HashSet<>(2 * expectedNumLocations);
+		this.tokenPriority = tokenPriority;
 	}
 	
 	boolean addLocation(Location location) {
@@ -37,6 +48,10 @@ final class ActionLocations implements Comparable<ActionLocations> {
 		assert removeResult;
 	}
 	
+	boolean containsLocation(Location location) {
+		return locations.contains(location);
+	}
+	
 	boolean isEmpty() {
 		return locations.isEmpty();
 	}
@@ -52,6 +67,51 @@ final class ActionLocations implements Comparable<ActionLocations> {
 	int getFactionPriority() {
 		return factionPriority;
 	}
+	
+	/**
+	 * Writes these action locations, with locations as their ids in ids.
+	 */
+	void write(DataOutput out, Game.IntegersToObjects ids) throws IOException {
+		out.writeByte(faction.ordinal());
+		out.writeInt(factionPriority);
+		out.writeInt(tokenPriority);
+		out.writeInt(locations.size());
+		
+		for (Location location : locations) {
+			out.writeInt(ids.getLocationId(location));
+		}
+	}
+	
+	/**
+	 * @throws IOException if in does not hold action locations
+	 * @throws IllegalArgumentException if a location id is not in ids
+	 */
+	static ActionLocations read(DataInput in, Game.IntegersToObjects ids)
+			throws IOException {
+		int ordinal = in.readUnsignedByte();
+		
+		if (ordinal >= Faction.values().length) {
+			throw new IOException("Unknown faction " + ordinal);
+		}
+		
+		int factionPriority = in.readInt();
+		int tokenPriority = in.readInt();
+		int numLocations = in.readInt();
+		
+		if (numLocations < 0) {
+			throw new IOException("Negative number of locations");
+		}
+		
+		ActionLocations actionLocations = new ActionLocations(
+				Faction.values()[ordinal], factionPriority, tokenPriority, 
+				numLocations);
+		
+		for (int i = 0; i < numLocations; i++) {
+			actionLocations.addLocation(ids.getLocation(in.readInt()));
+		}
+		
+		return actionLocations;
+	}
 
 	@Override
 	public int compareTo(ActionLocations other) {
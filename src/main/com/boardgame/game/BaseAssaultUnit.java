@@ -2,7 +2,7 @@ package com.boardgame.game;
 
 final class BaseAssaultUnit extends AbstractUnit {
 	BaseAssaultUnit() {
-		super(2, UnitString.INFANTRY);
+		super(2, UnitString.BASE_ASSAULT);
 	}
 	
 	@Override
@@ -0,0 +1,111 @@
+package com.boardgame.game;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of loading a batch of game state files: the state of each
+ * file that loaded and a report for each file that did not. Every file of
+ * the batch is in exactly one of the two. Immutable.
+ *
+ */
+public final class BatchLoadResult {
+	//in the order of their paths
+	private final Map<Path, GameState> pathsToGameStates;
+	private final List<FileError> errors;
+	
+	BatchLoadResult(Map<Path, GameState> pathsToGameStates,
+			List<FileError> errors) {
+		this.pathsToGameStates = Collections.unmodifiableMap(pathsToGameStates);
+		this.errors = Collections.unmodifiableList(errors);
+		
+		checkRep();
+	}
+	
+	/**
+	 * @return the state loaded from each file that loaded, by its path, in
+	 * path order
+	 */
+	public Map<Path, GameState> getPathsToGameStates() {
+		return pathsToGameStates;
+	}
+	
+	/**
+	 * @return a report for each file that failed to load, in path order
+	 */
+	public List<FileError> getErrors() {
+		return errors;
+	}
+	
+	/**
+	 * @return whether every file of the batch loaded
+	 */
+	public boolean isSuccess() {
+		return errors.isEmpty();
+	}
+	
+	private void checkRep() {
+		assert pathsToGameStates != null : "Null game states";
+		assert errors != null : "Null errors";
+		
+		for (FileError error : errors) {
+			assert !pathsToGameStates.containsKey(error.getPath()) :
+				"File both loaded and failed: " + error.getPath();
+		}
+	}
+	
+	/**
+	 * Why one file of a batch failed to load.
+	 *
+	 */
+	public static final class FileError {
+		private final Path path;
+		private final Throwable cause;
+		
+		/**
+		 * @param cause  one of the exceptions GameStateLoader.load throws, or
+		 * a RuntimeException or AssertionError thrown building a state the 
+		 * schema accepted
+		 */
+		FileError(Path path, Throwable cause) {
+			this.path = path;
+			this.cause = cause;
+			
+			assert path != null : "Null path";
+			assert cause != null : "Null cause";
+		}
+		
+		public Path getPath() {
+			return path;
+		}
+		
+		/**
+		 * @return what the file failed with: an IOException, a
+		 * ParseException, a SchemaMatchingException or, for a file that
+		 * matches its schema but not the rules of the game, a
+		 * RuntimeException or an AssertionError
+		 */
+		public Throwable getCause() {
+			return cause;
+		}
+		
+		/**
+		 * @return each way the file fails to match its schema, empty if the
+		 * file failed for another reason
+		 */
+		public List<String> getViolations() {
+			if (cause instanceof SchemaMatchingException) {
+				return ((SchemaMatchingException) cause).getViolations();
+			}
+			
+			return Collections.emptyList();
+		}
+		
+		@Override
+		public String toString() {
+			return path + ": " + cause;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package com.boardgame.game;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.boardgame.game.Location.Terrain;
+
+/**
+ * Read-only adjacency structure of a board, compiled into compressed sparse
+ * row arrays keyed by location index. The adjacencies of the location with
+ * index i are getAdjacentIndex(k) for getAdjacencyStart(i) <= k <
+ * getAdjacencyEnd(i), in ascending order of index.
+ *
+ */
+final class BoardGraph {
+	private final int[] adjacencyOffsets;
+	private final int[] adjacencies;
+	private final Terrain[] terrains;
+	
+	//indexed by terrain mask, see getTerrainMask
+	private final BitSet[] locationsWithTerrains;
+	
+	private BoardGraph(int[] adjacencyOffsets, int[] adjacencies, 
+			Terrain[] terrains) {
+		this.adjacencyOffsets = adjacencyOffsets;
+		this.adjacencies = adjacencies;
+		this.terrains = terrains;
+		this.locationsWithTerrains = findLocationsWithTerrains(terrains);
+		
+		checkRep();
+	}
+	
+	private static BitSet[] findLocationsWithTerrains(Terrain[] terrains) {
+		BitSet[] result = new BitSet[1 << Terrain.values().length];
+		
+		for (int mask = 0; mask < result.length; mask++) {
+			result[mask] = new BitSet(terrains.length);
+		}
+		
+		for (int i = 0; i < terrains.length; i++) {
+			for (int mask = 0; mask < result.length; mask++) {
+				if ((mask & getTerrainMask(terrains[i])) != 0) {
+					result[mask].set(i);
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the bit that represents terrain in a terrain mask
+	 */
+	static int getTerrainMask(Terrain terrain) {
+		return 1 << terrain.ordinal();
+	}
+	
+	int getNumLocations() {
+		return adjacencyOffsets.length - 1;
+	}
+	
+	int getAdjacencyStart(int index) {
+		assert index >= 0 && index < getNumLocations();
+		return adjacencyOffsets[index];
+	}
+	
+	int getAdjacencyEnd(int index) {
+		assert index >= 0 && index < getNumLocations();
+		return adjacencyOffsets[index + 1];
+	}
+	
+	int getAdjacentIndex(int adjacency) {
+		return adjacencies[adjacency];
+	}
+	
+	int getNumAdjacent(int index) {
+		return getAdjacencyEnd(index) - getAdjacencyStart(index);
+	}
+	
+	Terrain getTerrain(int index) {
+		return terrains[index];
+	}
+	
+	/**
+	 * @return the indexes of the locations whose terrain is in terrainMask;
+	 * shared, must not be modified
+	 */
+	BitSet getLocationsWithTerrains(int terrainMask) {
+		return locationsWithTerrains[terrainMask];
+	}
+	
+	boolean isAdjacent(int indexA, int indexB) {
+		return Arrays.binarySearch(adjacencies, getAdjacencyStart(indexA),
+				getAdjacencyEnd(indexA), indexB) >= 0;
+	}
+	
+	private void checkRep() {
+		assert adjacencyOffsets != null : "Null offsets";
+		assert adjacencies != null : "Null adjacencies";
+		assert terrains != null : "Null terrains";
+		assert terrains.length == getNumLocations() : "Missing terrains";
+		assert adjacencyOffsets.length >= 1 : "Missing offsets";
+		assert adjacencyOffsets[0] == 0 : "First offset not zero";
+		assert adjacencyOffsets[adjacencyOffsets.length - 1] ==
+				adjacencies.length : "Last offset not adjacency count";
+		
+		for (int i = 0; i < getNumLocations(); i++) {
+			assert adjacencyOffsets[i] <= adjacencyOffsets[i + 1] :
+				"Decreasing offsets";
+			
+			for (int k = adjacencyOffsets[i]; k < adjacencyOffsets[i + 1]; k++) {
+				assert adjacencies[k] != i : "Location adjacent to itself";
+				assert k == adjacencyOffsets[i] ||
+						adjacencies[k - 1] < adjacencies[k] : "Unsorted adjacencies";
+			}
+		}
+	}
+	
+	static class Builder {
+		private final int numLocations;
+		
+		private final Terrain[] terrains;
+		
+		private int[] pairs;
+		private int numPairs;
+		
+		Builder(int numLocations) {
+			assert numLocations >= 0;
+			
+			this.numLocations = numLocations;
+			this.terrains = new Terrain[numLocations];
+			this.pairs = new int[16];
+			this.numPairs = 0;
+		}
+		
+		Builder setTerrain(int index, Terrain terrain) {
+			assert index >= 0 && index < numLocations :
+				"Location index out of bounds: " + index;
+			assert terrain != null;
+			
+			terrains[index] = terrain;
+			return this;
+		}
+		
+		/**
+		 * Adds an undirected adjacency between the two given indexes.
+		 * Duplicate adjacencies are ignored.
+		 */
+		Builder addAdjacency(int indexA, int indexB) {
+			assert indexA >= 0 && indexA < numLocations :
+				"Location index out of bounds: " + indexA;
+			assert indexB >= 0 && indexB < numLocations :
+				"Location index out of bounds: " + indexB;
+			assert indexA != indexB : "Location cannot be adjacent to itself: "
+				+ indexA;
+			
+			if (2 * numPairs + 2 > pairs.length) {
+				pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+			}
+			
+			pairs[2 * numPairs] = indexA;
+			pairs[2 * numPairs + 1] = indexB;
+			numPairs++;
+			
+			return this;
+		}
+		
+		BoardGraph build() {
+			int[] degrees = new int[numLocations];
+			
+			for (int i = 0; i < 2 * numPairs; i++) {
+				degrees[pairs[i]]++;
+			}
+			
+			int[] offsets = new int[numLocations + 1];
+			
+			for (int i = 0; i < numLocations; i++) {
+				offsets[i + 1] = offsets[i] + degrees[i];
+			}
+			
+			int[] unsorted = new int[offsets[numLocations]];
+			int[] fill = Arrays.copyOf(offsets, numLocations);
+			
+			for (int p = 0; p < numPairs; p++) {
+				int indexA = pairs[2 * p];
+				int indexB = pairs[2 * p + 1];
+				
+				unsorted[fill[indexA]++] = indexB;
+				unsorted[fill[indexB]++] = indexA;
+			}
+			
+			//sort each row and drop duplicate adjacencies
+			int[] compactOffsets = new int[numLocations + 1];
+			int size = 0;
+			
+			for (int i = 0; i < numLocations; i++) {
+				Arrays.sort(unsorted, offsets[i], offsets[i + 1]);
+				compactOffsets[i] = size;
+				int previous = -1;
+				
+				for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+					int adjacent = unsorted[k];
+					
+					if (adjacent != previous) {
+						unsorted[size++] = adjacent;
+						previous = adjacent;
+					}
+				}
+			}
+			
+			compactOffsets[numLocations] = size;
+			
+			for (Terrain terrain : terrains) {
+				assert terrain != null : "Missing terrain";
+			}
+			
+			return new BoardGraph(compactOffsets, Arrays.copyOf(unsorted, size), 
+					terrains.clone());
+		}
+	}
+}
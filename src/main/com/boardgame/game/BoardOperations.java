@@ -1,98 +1,74 @@
 package com.boardgame.game;
 
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
 import java.util.TreeSet;
 
 import com.boardgame.game.Location.Terrain;
 
 class BoardOperations {	
-	private static final int MIN_SUPPLY_CONSIDERATION = 2;
-	
 	static boolean checkSupplyForMove(GameState gameState, Location source, 
 			Location target, int numUnits) {
-		Set<Location> supplyConstrainedLocations = new HashSet<>();
-		
-		for (Location location : gameState.getLocations()) {
-			if (location.getOwner() == source.getOwner() && 
-					location.getNumUnits() >= MIN_SUPPLY_CONSIDERATION) {
-				supplyConstrainedLocations.add(location);	
-			}
-		}
+		checkMove(source, target);
 		
-		Set<Location> sortedLocations = new TreeSet<>(new Comparator<Location>() {
-			@Override
-			public int compare(Location o1, Location o2) {
-				//descending order
-				return o2.getNumUnits() - o1.getNumUnits();
-			}
-		});
+		Faction faction = source.getOwner();
 		
-		sortedLocations.addAll(supplyConstrainedLocations);
+		return gameState.getSupplyTracker().isWithinSupplyAfterMove(faction, 
+				findSupplyLimits(gameState, faction), source.getNumUnits(), 
+				target.getNumUnits(), numUnits);
+	}
+	
+	static int findMaxMovableUnits(GameState gameState, Location source, 
+			Location target) {
+		checkMove(source, target);
 		
 		Faction faction = source.getOwner();
-		int supplyPosition = gameState.getFactionsToSupplyPositions().get(faction);
-		//assuming sorted descending
-		List<Integer> supplyLimits = gameState.getSupplyLimits().get(supplyPosition);
 		
-		int supplyIndex = 0;
-		
-		for (Location location : sortedLocations) {
-			if (supplyIndex == supplyLimits.size()) {
-				return false;
-			}
-			
-			assert supplyIndex <= supplyLimits.size();
-			
-			int armySize = location.getNumUnits();
-			
-			if (location.equals(source)) {
-				armySize -= numUnits;
-			}
-			
-			if (location.equals(target)) {
-				armySize += numUnits;
-			}
-			
-			if (armySize > supplyLimits.get(supplyIndex)) {
-				return false;
-			}
-			
-			supplyIndex++;
+		return gameState.getSupplyTracker().findMaxMovableUnits(faction, 
+				findSupplyLimits(gameState, faction), source.getNumUnits(), 
+				target.getNumUnits());
+	}
+	
+	/**
+	 * The supply tracker counts the armies on source and target as one 
+	 * faction's, so a move into an enemy location would corrupt its counts.
+	 * @throws IllegalArgumentException if source has no owner or target is 
+	 * owned by another faction
+	 */
+	private static void checkMove(Location source, Location target) {
+		if (source.getOwner() == null) {
+			throw new IllegalArgumentException("Source has no owner: " + 
+					source.getName());
 		}
 		
-		return true;
+		if (target.getOwner() != null && 
+				target.getOwner() != source.getOwner()) {
+			throw new IllegalArgumentException("Target is owned by another "
+					+ "faction: " + target.getName());
+		}
+	}
+	
+	private static List<Integer> findSupplyLimits(GameState gameState, 
+			Faction faction) {
+		int supplyPosition = gameState.getFactionsToSupplyPositions().get(faction);
+		//assuming sorted descending
+		return gameState.getSupplyLimits().get(supplyPosition);
 	}
 	
-	static Set<Location> findAdjacentAndShipAccessibleLocations(Location origin) {
+	/**
+	 * Sets, in accessibleLocations, the index of every location adjacent to
+	 * origin or reachable from it by transport over sea locations occupied by
+	 * origin's owner.
+	 */
+	static void findAdjacentAndShipAccessibleLocations(GameState gameState, 
+			Location origin, BitSet accessibleLocations) {
+		assert gameState != null;
 		assert origin != null;
 		assert origin.getOwner() != null;
 		assert origin.getTerrain() == Terrain.LAND;
+		assert accessibleLocations != null;
 		
-		Set<Location> accessibleLocations = new HashSet<>();
-		
-		Queue<Location> unvisitedLocations = new LinkedList<>();
-		unvisitedLocations.addAll(origin.getAdjacentLocations());
-		
-		while (!unvisitedLocations.isEmpty()) {
-			Location current = unvisitedLocations.remove();
-			accessibleLocations.add(current);
-			
-			//boat transport
-			if (current.getTerrain() == Terrain.SEA && current.hasUnits()) {
-				for (Location adjacent : current.getAdjacentLocations()) {
-					if (!accessibleLocations.contains(adjacent) && 
-							!unvisitedLocations.contains(adjacent)) {
-						unvisitedLocations.add(adjacent);
-					}
-				}
-			}
-		}
-		
-		return accessibleLocations;
+		gameState.getShipTransport().findAccessibleLocations(origin, 
+				accessibleLocations);
 	}
 }
@@ -0,0 +1,147 @@
+package com.boardgame.game;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.boardgame.game.Location.Terrain;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The constant part of a board: its locations' names, terrains, bases,
+ * supply and invest, and its adjacencies. Parsed once from the board file
+ * and shared by every game loaded on that board. Immutable; each game gets
+ * its own locations from newLocations and shares the board graph, which is
+ * read-only.
+ *
+ */
+final class BoardTemplate {
+	private static final int NO_BASE = -1;
+	
+	private final String[] names;
+	private final Terrain[] terrains;
+	//NO_BASE for locations without a base
+	private final int[] baseSizes;
+	private final int[] supplies;
+	private final int[] invests;
+	private final BoardGraph board;
+	
+	private BoardTemplate(String[] names, Terrain[] terrains, int[] baseSizes,
+			int[] supplies, int[] invests, BoardGraph board) {
+		this.names = names;
+		this.terrains = terrains;
+		this.baseSizes = baseSizes;
+		this.supplies = supplies;
+		this.invests = invests;
+		this.board = board;
+		
+		checkRep();
+	}
+	
+	/**
+	 * @param constantRoot  the root of a board file, which matches the board
+	 * schema, not null
+	 * @return the template of the board
+	 */
+	static BoardTemplate parse(JsonNode constantRoot) {
+		assert constantRoot != null;
+		
+		JsonNode locationsArray = constantRoot.get("locations");
+		int numLocations = locationsArray.size();
+		
+		String[] names = new String[numLocations];
+		Terrain[] terrains = new Terrain[numLocations];
+		int[] baseSizes = new int[numLocations];
+		int[] supplies = new int[numLocations];
+		int[] invests = new int[numLocations];
+		Set<String> namesSet = new HashSet<>();
+		
+		for (int i = 0; i < numLocations; i++) {
+			JsonNode locationObject = locationsArray.get(i);
+			names[i] = locationObject.get("name").textValue();
+			terrains[i] = Terrain.valueOf(
+					locationObject.get("terrain").textValue());
+			baseSizes[i] = NO_BASE;
+			
+			JsonNode baseObject = locationObject.get("base");
+			
+			if (baseObject != null && !baseObject.isNull()) {
+				baseSizes[i] = baseObject.get("size").intValue();
+			}
+			
+			JsonNode supplyNode = locationObject.get("supply");
+			
+			if (supplyNode != null && !supplyNode.isNull()) {
+				supplies[i] = supplyNode.intValue();
+			}
+			
+			JsonNode investNode = locationObject.get("invest");
+			
+			if (investNode != null && !investNode.isNull()) {
+				invests[i] = investNode.intValue();
+			}
+			
+			boolean isLocationDuplicate = !namesSet.add(names[i]);
+			
+			assert !isLocationDuplicate : "Duplicate location encountered."
+					+ "Name: " + names[i];
+		}
+		
+		BoardGraph.Builder boardBuilder = new BoardGraph.Builder(numLocations);
+		
+		for (int i = 0; i < numLocations; i++) {
+			boardBuilder.setTerrain(i, terrains[i]);
+		}
+		
+		JsonNode adjacenciesArray = constantRoot.get("adjacencies");
+		
+		for (JsonNode adjacencyPair : adjacenciesArray) {
+			int locationIndexA = adjacencyPair.get(0).intValue();
+			int locationIndexB = adjacencyPair.get(1).intValue();
+			
+			boardBuilder.addAdjacency(locationIndexA, locationIndexB);
+		}
+		
+		return new BoardTemplate(names, terrains, baseSizes, supplies,
+				invests, boardBuilder.build());
+	}
+	
+	int getNumLocations() {
+		return names.length;
+	}
+	
+	/**
+	 * @return new locations of this board, with no owners, units or tokens,
+	 * in index order
+	 */
+	List<Location> newLocations() {
+		List<Location> result = new ArrayList<>(names.length);
+		
+		for (int i = 0; i < names.length; i++) {
+			Base base = baseSizes[i] == NO_BASE ? null : new Base(baseSizes[i]);
+			result.add(new Location(i, names[i], terrains[i], base,
+					supplies[i], invests[i]));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the adjacencies of this board, shared by every game on it
+	 */
+	BoardGraph getBoard() {
+		return board;
+	}
+	
+	private void checkRep() {
+		assert names != null : "Null names";
+		assert terrains.length == names.length : "Wrong number of terrains";
+		assert baseSizes.length == names.length : "Wrong number of bases";
+		assert supplies.length == names.length : "Wrong number of supplies";
+		assert invests.length == names.length : "Wrong number of invests";
+		assert board != null : "Null board";
+		assert board.getNumLocations() == names.length :
+			"Board size mismatch";
+	}
+}
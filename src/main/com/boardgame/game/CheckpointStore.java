@@ -0,0 +1,294 @@
+package com.boardgame.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps a game recoverable after a crash. The game's history is kept in a
+ * directory as numbered segments. Segment n holds a checkpoint of the game
+ * at the end of a round, except segment 0, which starts from the loaded
+ * scenario, and a command log of the commands accepted since then. A
+ * checkpoint holds the whole game state and where the game is in its
+ * round, so only segment 0 needs the scenario, and a recovered game is in
+ * the phase it was checkpointed in.
+ *
+ * A new segment is started at the end of every round, and older segments
+ * are then deleted, so recovering a game costs at most one checkpoint read
+ * and the replay of one round of commands.
+ *
+ */
+final class CheckpointStore {
+	static final int MAGIC = 0x47434b50;
+	static final int FORMAT_VERSION = 3;
+	
+	private static final String PREFIX = "segment-";
+	private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+	private static final String LOG_SUFFIX = ".log";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+	//the name of every file of a segment; other files are left alone
+	private static final Pattern SEGMENT_FILE_NAME = Pattern.compile(
+			Pattern.quote(PREFIX) + "(\\d{19})(" + 
+			Pattern.quote(CHECKPOINT_SUFFIX) + "|" + 
+			Pattern.quote(LOG_SUFFIX) + ")(" + 
+			Pattern.quote(TEMPORARY_SUFFIX) + ")?");
+	
+	private final Path directory;
+	private long segment;
+	private CommandLog commandLog;
+	
+	private CheckpointStore(Path directory, long segment) {
+		this.directory = directory;
+		this.segment = segment;
+	}
+	
+	/**
+	 * Recovers the game kept in directory, or starts keeping a new game
+	 * there if directory holds none. Commands the returned game accepts are
+	 * kept in directory.
+	 * @param initialState  the state loaded from the scenario the game was
+	 * created with, used if no checkpoint has been taken yet, not null
+	 * @param directory  the directory the game is kept in, not null
+	 * @throws IOException if the directory can't be read or written
+	 * @return the recovered game
+	 */
+	static Game openGame(GameState initialState, Path directory)
+			throws IOException {
+		assert initialState != null;
+		assert directory != null;
+		
+		Files.createDirectories(directory);
+		
+		long segment = findLastSegment(directory);
+		CheckpointStore store = new CheckpointStore(directory, segment);
+		Game game;
+		
+		if (segment > 0) {
+			try (InputStream in = Files.newInputStream(
+					store.checkpointPath(segment))) {
+				game = readCheckpoint(new DataInputStream(
+						new BufferedInputStream(in)));
+			}
+		}
+		else {
+			game = new Game(initialState);
+		}
+		
+		Path logPath = store.logPath(segment);
+		
+		if (Files.exists(logPath)) {
+			CommandLog.replay(game, logPath);
+		}
+		
+		store.commandLog = new CommandLog(logPath);
+		forceDirectory(directory);
+		store.deleteSegmentsBefore(segment);
+		
+		game.setCommandLog(store.commandLog);
+		game.setCheckpointStore(store);
+		game.checkpointIfDue();
+		
+		return game;
+	}
+	
+	//the last segment whose checkpoint was completely written
+	private static long findLastSegment(Path directory) throws IOException {
+		long lastSegment = 0;
+		
+		try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory,
+				PREFIX + "*" + CHECKPOINT_SUFFIX)) {
+			for (Path path : paths) {
+				Matcher matcher = SEGMENT_FILE_NAME.matcher(
+						path.getFileName().toString());
+				
+				if (matcher.matches() && matcher.group(3) == null) {
+					lastSegment = Math.max(lastSegment, findSegment(matcher));
+				}
+			}
+		}
+		
+		return lastSegment;
+	}
+	
+	/**
+	 * Starts a new segment with a checkpoint of game, which must be the game
+	 * kept by this store, and deletes the older segments.
+	 * @throws UncheckedIOException if the checkpoint could not be written
+	 */
+	void checkpoint(Game game) {
+		assert game != null;
+		
+		long nextSegment = segment + 1;
+		
+		try {
+			Path temporaryPath = directory.resolve(PREFIX +
+					format(nextSegment) + CHECKPOINT_SUFFIX + TEMPORARY_SUFFIX);
+			
+			try (FileChannel channel = FileChannel.open(temporaryPath,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(Channels.newOutputStream(channel)));
+				writeCheckpoint(game, out);
+				out.flush();
+				channel.force(true);
+			}
+			
+			//the checkpoint only counts once it is complete
+			Files.move(temporaryPath, checkpointPath(nextSegment),
+					StandardCopyOption.ATOMIC_MOVE);
+			
+			CommandLog nextCommandLog = new CommandLog(logPath(nextSegment));
+			//the new segment has to outlast a power loss before the old 
+			//ones are deleted
+			forceDirectory(directory);
+			game.setCommandLog(nextCommandLog);
+			commandLog.close();
+			commandLog = nextCommandLog;
+			segment = nextSegment;
+			
+			deleteSegmentsBefore(segment);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void deleteSegmentsBefore(long segment) throws IOException {
+		try (DirectoryStream<Path> paths =
+				Files.newDirectoryStream(directory, PREFIX + "*")) {
+			for (Path path : paths) {
+				Matcher matcher = SEGMENT_FILE_NAME.matcher(
+						path.getFileName().toString());
+				
+				if (matcher.matches() && findSegment(matcher) >= 0 &&
+						(findSegment(matcher) < segment ||
+						matcher.group(3) != null)) {
+					Files.delete(path);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Forces the names of the files created in directory onto the storage 
+	 * device, where the platform lets a directory be opened; elsewhere, 
+	 * its file system is trusted to keep them.
+	 */
+	private static void forceDirectory(Path directory) throws IOException {
+		try (FileChannel channel = FileChannel.open(directory, 
+				StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (AccessDeniedException e) {
+			//the platform can't open directories
+		}
+	}
+	
+	/**
+	 * @param matcher  a matcher of SEGMENT_FILE_NAME that matched
+	 * @return the segment of the file matched, -1 if its number is too 
+	 * large to be a segment
+	 */
+	private static long findSegment(Matcher matcher) {
+		try {
+			return Long.parseLong(matcher.group(1));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	private Path checkpointPath(long segment) {
+		return directory.resolve(PREFIX + format(segment) + CHECKPOINT_SUFFIX);
+	}
+	
+	private Path logPath(long segment) {
+		return directory.resolve(PREFIX + format(segment) + LOG_SUFFIX);
+	}
+	
+	//zero padded so that segments sort by name
+	private static String format(long segment) {
+		return String.format("%019d", segment);
+	}
+	
+	/**
+	 * Writes the faction ids of game, then its state as encoded by
+	 * GameStateCodec, then its progress as written by Game.writeProgress.
+	 */
+	static void writeCheckpoint(Game game, DataOutputStream out)
+			throws IOException {
+		GameState gameState = game.getGameState();
+		Game.IntegersToObjects ids = game.getIntegersToObjects();
+		
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		
+		Set<Faction> factions = gameState.getFactions();
+		out.writeInt(factions.size());
+		
+		for (Faction faction : factions) {
+			out.writeByte(faction.ordinal());
+			out.writeBoolean(ids.hasFactionId(faction));
+			
+			if (ids.hasFactionId(faction)) {
+				out.writeInt(ids.getFactionId(faction));
+			}
+		}
+		
+		GameStateCodec.write(gameState, out);
+		game.writeProgress(out);
+	}
+	
+	/**
+	 * @throws IOException if in does not hold a checkpoint
+	 * @return the game written in the checkpoint
+	 */
+	static Game readCheckpoint(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a checkpoint");
+		}
+		
+		int formatVersion = in.readInt();
+		
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException("Unsupported checkpoint version "
+					+ formatVersion);
+		}
+		
+		int numFactions = in.readInt();
+		Map<Faction, Integer> factionsToIds = new EnumMap<>(Faction.class);
+		
+		for (int i = 0; i < numFactions; i++) {
+			Faction faction = Faction.values()[in.readByte()];
+			
+			if (in.readBoolean()) {
+				factionsToIds.put(faction, in.readInt());
+			}
+		}
+		
+		Game game = new Game(GameStateCodec.read(in));
+		game.readProgress(in);
+		
+		for (Map.Entry<Faction, Integer> entry : factionsToIds.entrySet()) {
+			game.getIntegersToObjects().putFactionId(entry.getValue(), 
+					entry.getKey());
+		}
+		
+		return game;
+	}
+}
@@ -1,8 +1,13 @@
 package com.boardgame.game;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collection;
 
 final class Combat {
+	private static final int NO_COMBAT_CARD = -1;
+	
 	private final CombatStrategy attackStrategy;
 	private final CombatStrategy defenseStrategy;
 	private final Location source;
@@ -34,6 +39,14 @@ final class Combat {
 		this.target = target;
 	}
 	
+	//the strategies are filled in by read
+	private Combat(Location source, Location target) {
+		attackStrategy = new CombatStrategy(0);
+		defenseStrategy = new CombatStrategy(0);
+		this.source = source;
+		this.target = target;
+	}
+	
 	Location getSource() {
 		return source;
 	}
@@ -64,6 +77,54 @@ final class Combat {
 		getStrategy(onAttacker).combatBonus = 1;
 	}
 	
+	AbstractCombatCard getCombatCard(boolean isAttacker) {
+		return getStrategy(isAttacker).combatCard;
+	}
+	
+	int getCombatBonus(boolean isAttacker) {
+		return getStrategy(isAttacker).combatBonus;
+	}
+	
+	/**
+	 * Sets the combat card of a side back to combatCard, for undoing.
+	 * @param combatCard  may be null
+	 */
+	void restoreCombatCard(AbstractCombatCard combatCard, boolean isAttacker) {
+		getStrategy(isAttacker).combatCard = combatCard;
+	}
+	
+	/**
+	 * Sets the combat bonus of a side back to combatBonus, for undoing.
+	 */
+	void restoreCombatBonus(int combatBonus, boolean isAttacker) {
+		getStrategy(isAttacker).combatBonus = combatBonus;
+	}
+	
+	/**
+	 * Writes this combat, with its locations and cards as their ids in ids.
+	 */
+	void write(DataOutput out, Game.IntegersToObjects ids) throws IOException {
+		out.writeInt(ids.getLocationId(source));
+		out.writeInt(ids.getLocationId(target));
+		attackStrategy.write(out, ids);
+		defenseStrategy.write(out, ids);
+	}
+	
+	/**
+	 * @throws IOException if in does not hold a combat
+	 * @throws IllegalArgumentException if an id is not in ids
+	 */
+	static Combat read(DataInput in, Game.IntegersToObjects ids) 
+			throws IOException {
+		Location source = ids.getLocation(in.readInt());
+		Location target = ids.getLocation(in.readInt());
+		Combat combat = new Combat(source, target);
+		combat.attackStrategy.read(in, ids);
+		combat.defenseStrategy.read(in, ids);
+		
+		return combat;
+	}
+	
 	private CombatStrategy getStrategy(boolean isAttacker) {
 		if (isAttacker) {
 			return attackStrategy;
@@ -87,5 +148,33 @@ final class Combat {
 			this.combatBonus = 0;
 			this.combatCard = null;
 		}
+		
+		void write(DataOutput out, Game.IntegersToObjects ids) 
+				throws IOException {
+			out.writeInt(tokenBonus);
+			out.writeInt(strength);
+			out.writeInt(assistStrength);
+			out.writeInt(combatBonus);
+			
+			if (combatCard == null) {
+				out.writeInt(NO_COMBAT_CARD);
+			}
+			else {
+				out.writeInt(ids.getCombatCardId(combatCard));
+			}
+		}
+		
+		void read(DataInput in, Game.IntegersToObjects ids) 
+				throws IOException {
+			tokenBonus = in.readInt();
+			strength = in.readInt();
+			assistStrength = in.readInt();
+			combatBonus = in.readInt();
+			int combatCardId = in.readInt();
+			
+			if (combatCardId != NO_COMBAT_CARD) {
+				combatCard = ids.getCombatCard(combatCardId);
+			}
+		}
 	}
 }
@@ -0,0 +1,155 @@
+package com.boardgame.game;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Records the commands applied to a game so that they can be undone and
+ * redone. A command is kept as the versions of the game state before and
+ * after it, which share everything the command did not touch, plus any
+ * change to state that Game keeps outside of GameState. Undoing or redoing
+ * a command restores only the locations and players it changed.
+ *
+ * Changes made outside of recorded commands, such as phase transitions,
+ * invalidate the recorded commands.
+ *
+ */
+final class CommandJournal {
+	static final int DEFAULT_CAPACITY = 256;
+	
+	/**
+	 * A change to state that Game keeps outside of GameState.
+	 */
+	interface GameChange {
+		void undo();
+		
+		void redo();
+	}
+	
+	private static final class Command {
+		private final GameStateVersion before;
+		private final GameStateVersion after;
+		private final GameChange gameChange;
+		
+		Command(GameStateVersion before, GameStateVersion after,
+				GameChange gameChange) {
+			this.before = before;
+			this.after = after;
+			this.gameChange = gameChange;
+		}
+	}
+	
+	private final GameState gameState;
+	private final int capacity;
+	
+	private final Deque<Command> undoCommands;
+	private final Deque<Command> redoCommands;
+	
+	//the version the game state has if nothing changed since the last
+	//recorded, undone or redone command
+	private long expectedVersion;
+	
+	CommandJournal(GameState gameState, int capacity) {
+		assert gameState != null;
+		assert capacity > 0;
+		
+		this.gameState = gameState;
+		this.capacity = capacity;
+		this.undoCommands = new ArrayDeque<>();
+		this.redoCommands = new ArrayDeque<>();
+		this.expectedVersion = gameState.snapshot().getVersion();
+	}
+	
+	/**
+	 * Records a command that began at version before and has just finished.
+	 * Nothing is recorded if the command changed nothing.
+	 * @param before  the version taken before the command, not null
+	 * @param gameChange  the command's change to state kept by Game, may be
+	 * null
+	 */
+	void record(GameStateVersion before, GameChange gameChange) {
+		assert before != null;
+		
+		GameStateVersion after = gameState.snapshot();
+		
+		if (after == before && gameChange == null) {
+			return;
+		}
+		
+		if (before.getVersion() != expectedVersion) {
+			undoCommands.clear();
+		}
+		
+		undoCommands.push(new Command(before, after, gameChange));
+		redoCommands.clear();
+		
+		if (undoCommands.size() > capacity) {
+			undoCommands.removeLast();
+		}
+		
+		expectedVersion = after.getVersion();
+	}
+	
+	/**
+	 * @return whether a command was undone
+	 */
+	boolean undo() {
+		if (!isValid() || undoCommands.isEmpty()) {
+			return false;
+		}
+		
+		Command command = undoCommands.pop();
+		gameState.restore(command.after, command.before);
+		
+		if (command.gameChange != null) {
+			command.gameChange.undo();
+		}
+		
+		redoCommands.push(command);
+		expectedVersion = gameState.snapshot().getVersion();
+		
+		return true;
+	}
+	
+	/**
+	 * @return whether a command was redone
+	 */
+	boolean redo() {
+		if (!isValid() || redoCommands.isEmpty()) {
+			return false;
+		}
+		
+		Command command = redoCommands.pop();
+		gameState.restore(command.before, command.after);
+		
+		if (command.gameChange != null) {
+			command.gameChange.redo();
+		}
+		
+		undoCommands.push(command);
+		expectedVersion = gameState.snapshot().getVersion();
+		
+		return true;
+	}
+	
+	/**
+	 * Drops every recorded command, for when state changes in ways the
+	 * journal cannot undo.
+	 */
+	void clear() {
+		undoCommands.clear();
+		redoCommands.clear();
+		expectedVersion = gameState.snapshot().getVersion();
+	}
+	
+	//drops every command if the game state changed outside of the journal
+	private boolean isValid() {
+		if (gameState.snapshot().getVersion() != expectedVersion) {
+			undoCommands.clear();
+			redoCommands.clear();
+			return false;
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,296 @@
+package com.boardgame.game;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * An append-only binary log of the commands accepted by a game, from which
+ * the game can be rebuilt by replaying them on its initial state.
+ *
+ * The log starts with a header of two ints, MAGIC and FORMAT_VERSION. Each
+ * command is then one record of big-endian ints: the command type, the
+ * number of arguments, and the arguments, which are the ids given by
+ * Game.IntegersToObjects. A record cut short by a crash is ignored when
+ * replaying and cut off when the log is reopened.
+ *
+ * Each command is forced onto the storage device before append returns,
+ * so an accepted command survives a power loss as well as a crash of the
+ * process. That costs a device flush per command, which the few commands a
+ * second of a game afford; forcing a group of commands at once would lose
+ * the ones accepted since the last force.
+ *
+ */
+final class CommandLog implements Closeable {
+	static final int MAGIC = 0x474c4f47;
+	static final int FORMAT_VERSION = 1;
+	
+	static final int PUT_PLAYER = 0;
+	static final int START_GAME = 1;
+	static final int PLACE_TOKEN = 2;
+	static final int REMOVE_TOKEN = 3;
+	static final int SWITCH_TOKEN = 4;
+	static final int USE_TOKEN = 5;
+	static final int USE_COMBAT_CARD = 6;
+	static final int USE_COMBAT_BONUS = 7;
+	static final int UNDO = 8;
+	static final int REDO = 9;
+	
+	private static final int HEADER_SIZE = 2 * Integer.BYTES;
+	//more arguments than any command can have, to catch corrupt records
+	private static final int MAX_ARGUMENTS = 1 << 16;
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+	
+	private final FileChannel channel;
+	private ByteBuffer writeBuffer;
+	
+	/**
+	 * Opens the log at path for appending, creating it if it does not exist
+	 * and cutting off a record left incomplete by a crash.
+	 * @throws IOException if the log can't be opened or is not a command log
+	 */
+	CommandLog(Path path) throws IOException {
+		assert path != null;
+		
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.writeBuffer = ByteBuffer.allocate(64);
+		
+		try {
+			if (channel.size() == 0) {
+				writeBuffer.putInt(MAGIC).putInt(FORMAT_VERSION);
+				writeBuffer.flip();
+				write();
+			}
+			else {
+				channel.truncate(new Reader(channel).readAll(null));
+			}
+			
+			channel.force(false);
+			channel.position(channel.size());
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Appends a command to the log, and forces it onto the storage device.
+	 * @throws UncheckedIOException if the command could not be written
+	 */
+	void append(int commandType, int... arguments) {
+		assert commandType >= PUT_PLAYER && commandType <= REDO;
+		assert arguments.length <= MAX_ARGUMENTS;
+		
+		int size = (2 + arguments.length) * Integer.BYTES;
+		
+		if (writeBuffer.capacity() < size) {
+			writeBuffer = ByteBuffer.allocate(Math.max(size,
+					2 * writeBuffer.capacity()));
+		}
+		
+		writeBuffer.clear();
+		writeBuffer.putInt(commandType).putInt(arguments.length);
+		
+		for (int argument : arguments) {
+			writeBuffer.putInt(argument);
+		}
+		
+		writeBuffer.flip();
+		
+		try {
+			write();
+			channel.force(false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void write() throws IOException {
+		while (writeBuffer.hasRemaining()) {
+			channel.write(writeBuffer);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * Rebuilds a game by replaying the log at path on initialState, which
+	 * should be the state the logged game was created with.
+	 * @throws IOException if the log can't be read or is not a command log
+	 * @return the rebuilt game, which does not log its commands
+	 */
+	static Game replay(GameState initialState, Path path) throws IOException {
+		assert initialState != null;
+		
+		Game game = new Game(initialState);
+		replay(game, path);
+		
+		return game;
+	}
+	
+	/**
+	 * Replays the log at path on game, which should have had no commands
+	 * since it was created.
+	 * @throws IOException if the log can't be read or is not a command log
+	 */
+	static void replay(Game game, Path path) throws IOException {
+		assert game != null;
+		assert path != null;
+		
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ)) {
+			new Reader(channel).readAll(game);
+		}
+	}
+	
+	private static void apply(Game game, int commandType, int[] arguments) {
+		Game.IntegersToObjects ids = game.getIntegersToObjects();
+		
+		switch (commandType) {
+		case PUT_PLAYER:
+			game.putPlayer(arguments[0], Faction.values()[arguments[1]]);
+			break;
+		case START_GAME:
+			game.startGame();
+			break;
+		case PLACE_TOKEN:
+			game.placeToken(ids.getFaction(arguments[0]),
+					ids.getActionToken(arguments[1]),
+					ids.getLocation(arguments[2]));
+			break;
+		case REMOVE_TOKEN:
+			game.removeToken(ids.getFaction(arguments[0]),
+					ids.getLocation(arguments[1]));
+			break;
+		case SWITCH_TOKEN:
+			game.switchToken(ids.getFaction(arguments[0]),
+					ids.getActionToken(arguments[1]),
+					ids.getLocation(arguments[2]));
+			break;
+		case USE_TOKEN:
+			Collection<AbstractUnit> unitsInvolved = new ArrayList<>();
+			
+			for (int i = 3; i < arguments.length; i++) {
+				unitsInvolved.add(ids.getUnit(arguments[i]));
+			}
+			
+			game.useToken(ids.getFaction(arguments[0]),
+					ids.getLocation(arguments[1]),
+					ids.getLocation(arguments[2]), unitsInvolved);
+			break;
+		case USE_COMBAT_CARD:
+			game.useCombatCard(ids.getFaction(arguments[0]),
+					ids.getCombatCard(arguments[1]));
+			break;
+		case USE_COMBAT_BONUS:
+			game.useCombatBonus(ids.getFaction(arguments[0]));
+			break;
+		case UNDO:
+			game.undo();
+			break;
+		case REDO:
+			game.redo();
+			break;
+		default:
+			throw new IllegalStateException("Unknown command type "
+					+ commandType);
+		}
+	}
+	
+	/**
+	 * Reads the records of a log from the start of its channel.
+	 */
+	private static final class Reader {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private long position;
+		
+		Reader(FileChannel channel) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+			this.buffer.flip();
+			this.position = 0;
+		}
+		
+		/**
+		 * Reads every complete record, applying each to game if game is not
+		 * null.
+		 * @return the length of the log up to the end of its last complete
+		 * record
+		 */
+		long readAll(Game game) throws IOException {
+			if (readInt() != MAGIC) {
+				throw new IOException("Not a command log");
+			}
+			
+			int formatVersion = readInt();
+			
+			if (formatVersion != FORMAT_VERSION) {
+				throw new IOException("Unsupported command log version "
+						+ formatVersion);
+			}
+			
+			long end = HEADER_SIZE;
+			
+			try {
+				while (true) {
+					int commandType = readInt();
+					int numArguments = readInt();
+					
+					if (numArguments < 0 || numArguments > MAX_ARGUMENTS) {
+						throw new IOException("Corrupt command record at "
+								+ end);
+					}
+					
+					int[] arguments = new int[numArguments];
+					
+					for (int i = 0; i < numArguments; i++) {
+						arguments[i] = readInt();
+					}
+					
+					if (game != null) {
+						apply(game, commandType, arguments);
+					}
+					
+					end += (2 + numArguments) * Integer.BYTES;
+				}
+			} catch (EOFException e) {
+				//the log ends here, possibly partway through a record
+			}
+			
+			return end;
+		}
+		
+		private int readInt() throws IOException {
+			if (buffer.remaining() < Integer.BYTES) {
+				buffer.compact();
+				
+				while (buffer.position() < Integer.BYTES) {
+					int numRead = channel.read(buffer, position);
+					
+					if (numRead < 0) {
+						buffer.flip();
+						throw new EOFException();
+					}
+					
+					position += numRead;
+				}
+				
+				buffer.flip();
+			}
+			
+			return buffer.getInt();
+		}
+	}
+}
@@ -0,0 +1,563 @@
+package com.boardgame.game;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+
+import com.boardgame.game.AbstractUnit.UnitString;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes what one faction may see of a game as JSON, to be sent to the
+ * client of that faction. A faction sees the whole board except the tokens
+ * other factions have placed, which stay hidden until they are displayed in
+ * the planning phase. It sees its own hand, but only the size of the hands
+ * of other factions, and only the top card of each deck.
+ *
+ * Views are numbered. A client that holds an earlier view can be sent a
+ * delta holding only what changed in its view since then, which is found
+ * from the records the two versions of the game state do not share.
+ *
+ * Spectators, given as a null faction, see what every faction sees of the
+ * others. What is written of the latest version for each faction and for
+ * spectators is cached in the version, so that clients asking between two
+ * commands are sent the same string.
+ *
+ */
+final class FactionView {
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	
+	private static final int NO_TOKEN = -1;
+	private static final int HIDDEN_TOKEN = -2;
+	
+	//the index of the views written for spectators in a version's cache
+	private static final int SPECTATOR = Faction.values().length;
+	
+	/**
+	 * A numbered view of a game, which is the same for every faction. Views
+	 * are renumbered when either the game state or the visibility of tokens
+	 * changes.
+	 */
+	static final class Version {
+		private final long number;
+		private final GameStateVersion state;
+		private final boolean areTokensRevealed;
+		
+		//the snapshots written of this version, indexed by viewer, and the 
+		//deltas written to it, by the number of the version they start at;
+		//null once the cache is dropped
+		private String[] snapshots;
+		private Map<Long, String[]> deltas;
+		
+		Version(long number, GameStateVersion state,
+				boolean areTokensRevealed) {
+			assert state != null;
+			
+			this.number = number;
+			this.state = state;
+			this.areTokensRevealed = areTokensRevealed;
+			this.snapshots = new String[SPECTATOR + 1];
+			this.deltas = new HashMap<>();
+		}
+		
+		long getNumber() {
+			return number;
+		}
+		
+		GameStateVersion getState() {
+			return state;
+		}
+		
+		boolean getAreTokensRevealed() {
+			return areTokensRevealed;
+		}
+		
+		/**
+		 * Drops what was written of this version, for when a later version 
+		 * is taken and this one is kept only to write deltas from.
+		 */
+		void dropCache() {
+			snapshots = null;
+			deltas = null;
+		}
+	}
+	
+	private final Game.IntegersToObjects ids;
+	private final Faction faction;
+	private final JsonGenerator generator;
+	
+	private FactionView(Game.IntegersToObjects ids, Faction faction,
+			JsonGenerator generator) {
+		this.ids = ids;
+		this.faction = faction;
+		this.generator = generator;
+	}
+	
+	/**
+	 * @param faction  the faction whose view is written, null for spectators
+	 * @return everything faction may see of version, as JSON
+	 */
+	static String writeSnapshot(Game.IntegersToObjects ids, Faction faction,
+			Version version) {
+		assert ids != null;
+		assert version != null;
+		
+		int viewer = getViewer(faction);
+		
+		if (version.snapshots != null && version.snapshots[viewer] != null) {
+			return version.snapshots[viewer];
+		}
+		
+		StringWriter writer = new StringWriter();
+		
+		try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+			new FactionView(ids, faction, generator).writeSnapshot(version);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		String result = writer.toString();
+		
+		if (version.snapshots != null) {
+			version.snapshots[viewer] = result;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @param faction  the faction whose view is written, null for spectators
+	 * @param since  a view faction has already been sent, earlier than
+	 * version, not null
+	 * @return what changed in the view of faction from since to version, as
+	 * JSON
+	 */
+	static String writeDelta(Game.IntegersToObjects ids, Faction faction,
+			Version since, Version version) {
+		assert ids != null;
+		assert since != null;
+		assert version != null;
+		assert since.number <= version.number;
+		
+		int viewer = getViewer(faction);
+		String[] cachedDeltas = null;
+		
+		if (version.deltas != null) {
+			cachedDeltas = version.deltas.get(since.number);
+			
+			if (cachedDeltas == null) {
+				cachedDeltas = new String[SPECTATOR + 1];
+				version.deltas.put(since.number, cachedDeltas);
+			}
+			else if (cachedDeltas[viewer] != null) {
+				return cachedDeltas[viewer];
+			}
+		}
+		
+		StringWriter writer = new StringWriter();
+		
+		try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+			new FactionView(ids, faction, generator).writeDelta(since,
+					version);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		String result = writer.toString();
+		
+		if (cachedDeltas != null) {
+			cachedDeltas[viewer] = result;
+		}
+		
+		return result;
+	}
+	
+	private static int getViewer(Faction faction) {
+		return faction == null ? SPECTATOR : faction.ordinal();
+	}
+	
+	private void writeSnapshot(Version version) throws IOException {
+		GameStateVersion state = version.state;
+		
+		generator.writeStartObject();
+		generator.writeNumberField("version", version.number);
+		generator.writeBooleanField("isDelta", false);
+		
+		if (faction == null) {
+			generator.writeNullField("faction");
+		}
+		else {
+			generator.writeStringField("faction", faction.toString());
+		}
+		
+		writeOrders(state);
+		writeCounters(state);
+		
+		generator.writeArrayFieldStart("locations");
+		
+		for (int i = 0; i < state.getNumLocations(); i++) {
+			LocationRecord location = state.getLocation(i);
+			
+			//the client has the board, so it knows where nothing is
+			if (location.getOwner() != null || location.getNumUnits() > 0 ||
+					location.getActionToken() != null ||
+					location.getIsBaseDefenseActive()) {
+				writeLocation(i, location, version.areTokensRevealed);
+			}
+		}
+		
+		generator.writeEndArray();
+		
+		generator.writeObjectFieldStart("players");
+		
+		for (Faction playerFaction : Faction.values()) {
+			PlayerRecord player = state.getPlayer(playerFaction);
+			
+			if (player != null) {
+				writePlayer(playerFaction, player);
+			}
+		}
+		
+		generator.writeEndObject();
+		
+		generator.writeObjectFieldStart("decks");
+		writeDeck("eventCards1", state.getEventCards1Stack(),
+				state.getEventCards1Discard());
+		writeDeck("eventCards2", state.getEventCards2Stack(),
+				state.getEventCards2Discard());
+		writeDeck("eventCards3", state.getEventCards3Stack(),
+				state.getEventCards3Discard());
+		writeDeck("threatCards", state.getThreatCardsStack(),
+				state.getThreatCardsDiscard());
+		generator.writeEndObject();
+		
+		generator.writeEndObject();
+	}
+	
+	private void writeDelta(Version since, Version version)
+			throws IOException {
+		GameStateVersion from = since.state;
+		GameStateVersion to = version.state;
+		
+		generator.writeStartObject();
+		generator.writeNumberField("version", version.number);
+		generator.writeBooleanField("isDelta", true);
+		generator.writeNumberField("since", since.number);
+		
+		if (from.getTurnOrder() != to.getTurnOrder() ||
+				from.getTieBreakingOrder() != to.getTieBreakingOrder() ||
+				from.getSpecialTokenOrder() != to.getSpecialTokenOrder()) {
+			writeOrders(to);
+		}
+		
+		if (from.getThreatLevel() != to.getThreatLevel() ||
+				from.getRound() != to.getRound() ||
+				from.getHasCombatBonusBeenUsed() !=
+					to.getHasCombatBonusBeenUsed() ||
+				from.getHasSightPowerBeenUsed() !=
+					to.getHasSightPowerBeenUsed()) {
+			writeCounters(to);
+		}
+		
+		BitSet changedLocations = new BitSet(to.getNumLocations());
+		from.getLocations().findDifferences(to.getLocations(),
+				changedLocations);
+		
+		//revealing or hiding tokens changes every location holding one
+		if (since.areTokensRevealed != version.areTokensRevealed) {
+			for (int i = 0; i < to.getNumLocations(); i++) {
+				if (to.getLocation(i).getActionToken() != null) {
+					changedLocations.set(i);
+				}
+			}
+		}
+		
+		generator.writeArrayFieldStart("locations");
+		
+		for (int i = changedLocations.nextSetBit(0); i >= 0;
+				i = changedLocations.nextSetBit(i + 1)) {
+			LocationRecord fromLocation = from.getLocation(i);
+			LocationRecord toLocation = to.getLocation(i);
+			
+			//a hidden token being swapped for another must not show
+			if (!isSameView(fromLocation, since.areTokensRevealed,
+					toLocation, version.areTokensRevealed)) {
+				writeLocation(i, toLocation, version.areTokensRevealed);
+			}
+		}
+		
+		generator.writeEndArray();
+		
+		generator.writeObjectFieldStart("players");
+		
+		for (Faction playerFaction : Faction.values()) {
+			PlayerRecord fromPlayer = from.getPlayer(playerFaction);
+			PlayerRecord toPlayer = to.getPlayer(playerFaction);
+			
+			if (toPlayer != null && (fromPlayer == null ||
+					!isSameView(playerFaction, fromPlayer, toPlayer))) {
+				writePlayer(playerFaction, toPlayer);
+			}
+		}
+		
+		generator.writeEndObject();
+		
+		generator.writeObjectFieldStart("decks");
+		
+		if (from.getEventCards1Stack() != to.getEventCards1Stack() ||
+				from.getEventCards1Discard() != to.getEventCards1Discard()) {
+			writeDeck("eventCards1", to.getEventCards1Stack(),
+					to.getEventCards1Discard());
+		}
+		
+		if (from.getEventCards2Stack() != to.getEventCards2Stack() ||
+				from.getEventCards2Discard() != to.getEventCards2Discard()) {
+			writeDeck("eventCards2", to.getEventCards2Stack(),
+					to.getEventCards2Discard());
+		}
+		
+		if (from.getEventCards3Stack() != to.getEventCards3Stack() ||
+				from.getEventCards3Discard() != to.getEventCards3Discard()) {
+			writeDeck("eventCards3", to.getEventCards3Stack(),
+					to.getEventCards3Discard());
+		}
+		
+		if (from.getThreatCardsStack() != to.getThreatCardsStack() ||
+				from.getThreatCardsDiscard() != to.getThreatCardsDiscard()) {
+			writeDeck("threatCards", to.getThreatCardsStack(),
+					to.getThreatCardsDiscard());
+		}
+		
+		generator.writeEndObject();
+		
+		generator.writeEndObject();
+	}
+	
+	private void writeOrders(GameStateVersion state) throws IOException {
+		writeFactions("turnOrder", state.getTurnOrder());
+		writeFactions("tieBreakingOrder", state.getTieBreakingOrder());
+		writeFactions("specialTokenOrder", state.getSpecialTokenOrder());
+	}
+	
+	private void writeFactions(String key, List<Faction> factions)
+			throws IOException {
+		generator.writeArrayFieldStart(key);
+		
+		for (Faction orderFaction : factions) {
+			generator.writeString(orderFaction.toString());
+		}
+		
+		generator.writeEndArray();
+	}
+	
+	private void writeCounters(GameStateVersion state) throws IOException {
+		generator.writeNumberField("threatLevel", state.getThreatLevel());
+		generator.writeNumberField("round", state.getRound());
+		generator.writeBooleanField("hasCombatBonusBeenUsed",
+				state.getHasCombatBonusBeenUsed());
+		generator.writeBooleanField("hasSightPowerBeenUsed",
+				state.getHasSightPowerBeenUsed());
+	}
+	
+	private void writeLocation(int locationId, LocationRecord location,
+			boolean areTokensRevealed) throws IOException {
+		generator.writeStartObject();
+		generator.writeNumberField("id", locationId);
+		
+		if (location.getOwner() == null) {
+			generator.writeNullField("owner");
+		}
+		else {
+			generator.writeStringField("owner", location.getOwner().toString());
+		}
+		
+		generator.writeObjectFieldStart("units");
+		
+		for (UnitString unitString : UnitString.values()) {
+			if (location.getNumUnits(unitString) > 0) {
+				generator.writeNumberField(unitString.toString(),
+						location.getNumUnits(unitString));
+			}
+		}
+		
+		generator.writeEndObject();
+		
+		generator.writeObjectFieldStart("routedUnits");
+		
+		for (UnitString unitString : UnitString.values()) {
+			if (location.getNumRoutedUnits(unitString) > 0) {
+				generator.writeNumberField(unitString.toString(),
+						location.getNumRoutedUnits(unitString));
+			}
+		}
+		
+		generator.writeEndObject();
+		
+		int tokenId = getVisibleTokenId(location, areTokensRevealed);
+		generator.writeBooleanField("hasToken", tokenId != NO_TOKEN);
+		
+		if (tokenId >= 0) {
+			generator.writeNumberField("token", tokenId);
+		}
+		
+		generator.writeBooleanField("isBaseDefenseActive",
+				location.getIsBaseDefenseActive());
+		generator.writeEndObject();
+	}
+	
+	/**
+	 * @return the id of the token at location, NO_TOKEN if it has none, or
+	 * HIDDEN_TOKEN if faction may not see which token it is
+	 */
+	private int getVisibleTokenId(LocationRecord location,
+			boolean areTokensRevealed) {
+		AbstractActionToken token = location.getActionToken();
+		
+		if (token == null) {
+			return NO_TOKEN;
+		}
+		
+		if (areTokensRevealed || (faction != null && 
+				location.getOwner() == faction)) {
+			return ids.getTokenId(token);
+		}
+		
+		return HIDDEN_TOKEN;
+	}
+	
+	private boolean isSameView(LocationRecord a, boolean aAreTokensRevealed,
+			LocationRecord b, boolean bAreTokensRevealed) {
+		if (a.getOwner() != b.getOwner() ||
+				a.getIsBaseDefenseActive() != b.getIsBaseDefenseActive() ||
+				getVisibleTokenId(a, aAreTokensRevealed) !=
+					getVisibleTokenId(b, bAreTokensRevealed)) {
+			return false;
+		}
+		
+		for (UnitString unitString : UnitString.values()) {
+			if (a.getNumUnits(unitString) != b.getNumUnits(unitString) ||
+					a.getNumRoutedUnits(unitString) !=
+						b.getNumRoutedUnits(unitString)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private void writePlayer(Faction playerFaction, PlayerRecord player)
+			throws IOException {
+		generator.writeObjectFieldStart(playerFaction.toString());
+		generator.writeNumberField("cashInHand", player.getCashInHand());
+		generator.writeNumberField("cashPool", player.getCashPool());
+		generator.writeNumberField("numSpecialTokensUsed",
+				player.getNumSpecialTokensUsed());
+		writeCombatCards("combatCardsDiscard", player.getCombatCardsDiscard());
+		
+		if (playerFaction == faction) {
+			writeCombatCards("combatCardsInHand",
+					player.getCombatCardsInHand());
+			
+			generator.writeObjectFieldStart("unitsInHand");
+			
+			for (UnitString unitString : UnitString.values()) {
+				int count = countUnits(player.getUnitsInHand(), unitString);
+				
+				if (count > 0) {
+					generator.writeNumberField(unitString.toString(), count);
+				}
+			}
+			
+			generator.writeEndObject();
+			
+			generator.writeArrayFieldStart("tokens");
+			
+			for (AbstractActionToken token : player.getTokens()) {
+				generator.writeNumber(ids.getTokenId(token));
+			}
+			
+			generator.writeEndArray();
+		}
+		else {
+			generator.writeNumberField("numCombatCardsInHand",
+					player.getCombatCardsInHand().size());
+			generator.writeNumberField("numUnitsInHand",
+					player.getUnitsInHand().size());
+			generator.writeNumberField("numTokens", player.getTokens().size());
+		}
+		
+		generator.writeEndObject();
+	}
+	
+	private static int countUnits(Collection<AbstractUnit> units,
+			UnitString unitString) {
+		int count = 0;
+		
+		for (AbstractUnit unit : units) {
+			if (unit.getUnitString() == unitString) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	private void writeCombatCards(String key,
+			Collection<AbstractCombatCard> combatCards) throws IOException {
+		generator.writeArrayFieldStart(key);
+		
+		for (AbstractCombatCard combatCard : combatCards) {
+			generator.writeNumber(ids.getCombatCardId(combatCard));
+		}
+		
+		generator.writeEndArray();
+	}
+	
+	private boolean isSameView(Faction playerFaction, PlayerRecord a,
+			PlayerRecord b) {
+		if (a == b) {
+			return true;
+		}
+		
+		//every change to the player's own record shows
+		if (playerFaction == faction) {
+			return false;
+		}
+		
+		return a.getCashInHand() == b.getCashInHand() &&
+				a.getCashPool() == b.getCashPool() &&
+				a.getNumSpecialTokensUsed() == b.getNumSpecialTokensUsed() &&
+				a.getCombatCardsDiscard().equals(b.getCombatCardsDiscard()) &&
+				a.getCombatCardsInHand().size() ==
+					b.getCombatCardsInHand().size() &&
+				a.getUnitsInHand().size() == b.getUnitsInHand().size() &&
+				a.getTokens().size() == b.getTokens().size();
+	}
+	
+	private void writeDeck(String key, List<?> stack, List<?> discard)
+			throws IOException {
+		generator.writeObjectFieldStart(key);
+		generator.writeNumberField("stackSize", stack.size());
+		generator.writeNumberField("discardSize", discard.size());
+		
+		generator.writeFieldName("top");
+		
+		//stacks are queues, so the top of a stack is its first card
+		if (stack.isEmpty()) {
+			generator.writeNull();
+		}
+		else {
+			generator.writeRawValue(JSONValue.toJSONString(stack.get(0)));
+		}
+		
+		generator.writeEndObject();
+	}
+}
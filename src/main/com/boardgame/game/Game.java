@@ -1,8 +1,14 @@
 package com.boardgame.game;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -18,6 +24,9 @@ import java.util.TreeSet;
  *
  */
 public final class Game {
+	//the number of recent views kept for sending deltas to clients
+	private static final int VIEW_HISTORY_SIZE = 64;
+	
 	private final GameState gameState;
 	private final IntegersToObjects integersToObjects;
 	
@@ -27,6 +36,19 @@ public final class Game {
 	
 	private Combat combat;
 	
+	private final CommandJournal journal;
+	//the entries added to the action locations queue by the token in use
+	private final List<ActionLocations> addedActionLocations;
+	
+	//null if commands are not logged
+	private CommandLog commandLog;
+	//null if the game is not kept recoverable
+	private CheckpointStore checkpointStore;
+	private boolean isCheckpointDue;
+	
+	//the most recent views, oldest first
+	private final Deque<FactionView.Version> views;
+	
 	/**
 	 * Creates a new game with the given initial game state
 	 * @param gameState  the initial game state, not null
@@ -41,6 +63,10 @@ public final class Game {
 		this.integersToObjects = new IntegersToObjects();
 		this.actionLocationsQueue = new PriorityQueue<>();
 		this.roundPhase = new RoundPhase(isNewGame(gameState));
+		this.journal = new CommandJournal(gameState, 
+				CommandJournal.DEFAULT_CAPACITY);
+		this.addedActionLocations = new ArrayList<>();
+		this.views = new ArrayDeque<>();
 	}
 	
 	private boolean isNewGame(GameState gameState) {
@@ -88,6 +114,8 @@ public final class Game {
 		
 		integersToObjects.integersToFactions.put(playerId, faction);
 		
+		logCommand(CommandLog.PUT_PLAYER, playerId, faction.ordinal());
+		
 		return success;
 	}
 	
@@ -110,6 +138,8 @@ public final class Game {
 		assert numPlayers == numExpected;
 		
 		nextPhase();
+		
+		logCommand(CommandLog.START_GAME);
 	}
 	
 	private boolean hasStartedGame() {
@@ -152,7 +182,18 @@ public final class Game {
 			throw new IllegalStateException("Faction does not own location");
 		}
 		
-		return placeTokenHelper(token, location);
+		GameStateVersion before = gameState.snapshot();
+		boolean result = placeTokenHelper(token, location);
+		journal.record(before, null);
+		
+		if (result) {
+			logCommand(CommandLog.PLACE_TOKEN, 
+					integersToObjects.getFactionId(faction), 
+					integersToObjects.getTokenId(token), 
+					integersToObjects.getLocationId(location));
+		}
+		
+		return result;
 	}
 	
 	private boolean placeTokenHelper(AbstractActionToken token, 
@@ -180,7 +221,7 @@ public final class Game {
 
 		boolean wasTokenPlaced = location.placeActionToken(token);
 		
-		if (!wasTokenPlaced) {
+		if (wasTokenPlaced) {
 			boolean removeResult = player.useToken(token);
 			assert removeResult;
 		}
@@ -217,7 +258,17 @@ public final class Game {
 			throw new IllegalStateException("Faction does not own location");
 		}
 		
-		return removeTokenHelper(location);
+		GameStateVersion before = gameState.snapshot();
+		boolean result = removeTokenHelper(location);
+		journal.record(before, null);
+		
+		if (result) {
+			logCommand(CommandLog.REMOVE_TOKEN, 
+					integersToObjects.getFactionId(faction), 
+					integersToObjects.getLocationId(location));
+		}
+		
+		return result;
 	}
 	
 	boolean removeTokenHelper(Location location) {
@@ -284,6 +335,7 @@ public final class Game {
 			throw new IllegalStateException("Faction does not own location");
 		}
 		
+		GameStateVersion before = gameState.snapshot();
 		boolean switchResult = false;
 		
 		boolean removeResult = removeTokenHelper(location);
@@ -297,6 +349,15 @@ public final class Game {
 			gameState.setHasSightPowerBeenUsed(true);
 		}
 		
+		journal.record(before, null);
+		
+		if (switchResult) {
+			logCommand(CommandLog.SWITCH_TOKEN, 
+					integersToObjects.getFactionId(faction), 
+					integersToObjects.getTokenId(nextToken), 
+					integersToObjects.getLocationId(location));
+		}
+		
 		return switchResult;
 	}
 	
@@ -344,12 +405,95 @@ public final class Game {
 		AbstractActionToken token = sourceLocation.getActionToken();
 		
 		if (token != null) {
-			validLocationTargets = token.findValidLocationTargets(sourceLocation);
+			validLocationTargets = 
+					token.findValidLocationTargets(gameState, sourceLocation);
 		}
 		
 		return validLocationTargets;
 	}
 	
+	/**
+	 * Finds, in one pass over the board, the locations that may be targeted by
+	 * the token on every location owned by the given faction that has one.
+	 * @param faction  the faction whose tokens' targets will be found, not 
+	 * null
+	 * @throws IllegalArgumentException if faction is null
+	 * @return the targets of every token-bearing location owned by faction, 
+	 * as location ids
+	 */
+	public LocationTargets findValidLocationTargets(Faction faction) {
+		if (faction == null) {
+			throw new IllegalArgumentException("Null faction");
+		}
+		
+		return findValidLocationTargetsHelper(faction);
+	}
+	
+	/**
+	 * Finds, in one pass over the board, the locations that may be targeted by
+	 * the token on every location that has one.
+	 * @return the targets of every token-bearing location, as location ids
+	 */
+	public LocationTargets findAllValidLocationTargets() {
+		return findValidLocationTargetsHelper(null);
+	}
+	
+	//a null faction stands for all factions
+	private LocationTargets findValidLocationTargetsHelper(Faction faction) {
+		LocationTargets.Builder builder = new LocationTargets.Builder();
+		BitSet validLocationTargets = 
+				new BitSet(gameState.getBoard().getNumLocations());
+		
+		for (Location location : gameState.getLocations()) {
+			AbstractActionToken token = location.getActionToken();
+			
+			if (token == null || 
+					(faction != null && location.getOwner() != faction)) {
+				continue;
+			}
+			
+			token.findValidLocationTargets(gameState, location, 
+					validLocationTargets);
+			
+			//location ids are location indexes, see makeLocationsMap
+			builder.addSource(location.getIndex(), validLocationTargets);
+		}
+		
+		return builder.build();
+	}
+	
+	/**
+	 * Finds the largest number of units that may move from source to target
+	 * without breaking the supply limits of source's owner.
+	 * @param source  the location the units would move from, not null
+	 * @param target  the location the units would move to, not null
+	 * @throws IllegalArgumentException if source is null
+	 * @throws IllegalArgumentException if target is null
+	 * @throws IllegalStateException if source has no owner
+	 * @throws IllegalStateException if target is owned by another faction
+	 * @return the largest number of units that may move, 0 if none may
+	 */
+	public int findMaxMovableUnits(Location source, Location target) {
+		if (source == null) {
+			throw new IllegalArgumentException("Null source location");
+		}
+		
+		if (target == null) {
+			throw new IllegalArgumentException("Null target location");
+		}
+		
+		if (source.getOwner() == null) {
+			throw new IllegalStateException("Source has no owner");
+		}
+		
+		if (target.getOwner() != null && 
+				target.getOwner() != source.getOwner()) {
+			throw new IllegalStateException("Target owned by another faction");
+		}
+		
+		return BoardOperations.findMaxMovableUnits(gameState, source, target);
+	}
+	
 	/**
 	 * Uses the given faction's token located at tokenLocation, with a target
 	 * location of target, and uses the given unitsInvolved
@@ -408,7 +552,7 @@ public final class Game {
 					+ "involved");
 		}
 		
-		if (!actionLocationsQueue.peek().getLocations().contains(tokenLocation)) {
+		if (!actionLocationsQueue.peek().containsLocation(tokenLocation)) {
 			throw new IllegalStateException("Out of turn");
 		}
 		
@@ -424,14 +568,38 @@ public final class Game {
 			unitsInvolvedCopy.add(unit);
 		}
 		
+		GameStateVersion before = gameState.snapshot();
+		ActionLocations actionLocations = actionLocationsQueue.peek();
+		Combat previousCombat = combat;
+		addedActionLocations.clear();
+		
 		boolean success = token.act(this, tokenLocation, target, unitsInvolvedCopy);
 		
 		if (success) {
-			actionLocationsQueue.peek().removeLocation(tokenLocation);
+			actionLocations.removeLocation(tokenLocation);
+			boolean wereActionLocationsUsedUp = actionLocations.isEmpty();
+			
+			if (wereActionLocationsUsedUp) {
+				actionLocationsQueue.remove(actionLocations);
+			}
+			
+			journal.record(before, new TokenUse(actionLocations, tokenLocation, 
+					wereActionLocationsUsedUp, addedActionLocations, 
+					previousCombat, combat));
+		}
+		
+		if (success) {
+			int[] arguments = new int[3 + unitsInvolvedCopy.size()];
+			arguments[0] = integersToObjects.getFactionId(faction);
+			arguments[1] = integersToObjects.getLocationId(tokenLocation);
+			arguments[2] = integersToObjects.getLocationId(target);
+			int i = 3;
 			
-			if (actionLocationsQueue.peek().isEmpty()) {
-				actionLocationsQueue.remove();
+			for (AbstractUnit unit : unitsInvolvedCopy) {
+				arguments[i++] = integersToObjects.getUnitId(unit);
 			}
+			
+			logCommand(CommandLog.USE_TOKEN, arguments);
 		}
 		
 		return success;
@@ -480,6 +648,9 @@ public final class Game {
 			throw new IllegalStateException("Faction can't play card");
 		}
 	
+		GameStateVersion before = gameState.snapshot();
+		AbstractCombatCard previousCombatCard = combat.getCombatCard(isAttacker);
+		
 		combat.useCombatCard(combatCard, isAttacker);
 		
 		if (player.getCombatCardsInHand().size() == 1) {
@@ -488,6 +659,13 @@ public final class Game {
 		
 		boolean result = player.moveCombatCardToDiscard(combatCard);
 		assert result;
+		
+		journal.record(before, new CombatCardUse(combat, isAttacker, 
+				previousCombatCard, combatCard));
+		
+		logCommand(CommandLog.USE_COMBAT_CARD, 
+				integersToObjects.getFactionId(faction), 
+				integersToObjects.getCombatCardId(combatCard));
 	}
 	
 	/**
@@ -529,9 +707,50 @@ public final class Game {
 			throw new IllegalStateException("Bonus already used"); 
 		}
 		
+		GameStateVersion before = gameState.snapshot();
+		int previousCombatBonus = combat.getCombatBonus(isAttacker);
+		
 		combat.useCombatBonus(isAttacker);
 		
 		gameState.setHasCombatBonusBeenUsed(true);
+		
+		journal.record(before, new CombatBonusUse(combat, isAttacker, 
+				previousCombatBonus, combat.getCombatBonus(isAttacker)));
+		
+		logCommand(CommandLog.USE_COMBAT_BONUS, 
+				integersToObjects.getFactionId(faction));
+	}
+	
+	/**
+	 * Undoes the last token placement, removal, switch or use, combat card 
+	 * or combat bonus that has not been undone. Commands from before the 
+	 * current phase, or from before the game state was changed by other 
+	 * means, can't be undone.
+	 * @return whether a command was undone
+	 */
+	public boolean undo() {
+		boolean result = journal.undo();
+		
+		if (result) {
+			logCommand(CommandLog.UNDO);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Redoes the last undone command, if nothing was done since it was 
+	 * undone.
+	 * @return whether a command was redone
+	 */
+	public boolean redo() {
+		boolean result = journal.redo();
+		
+		if (result) {
+			logCommand(CommandLog.REDO);
+		}
+		
+		return result;
 	}
 	
 	public void retreat(Faction defeatedFaction, AbstractUnit retreatingUnit, 
@@ -555,12 +774,241 @@ public final class Game {
 		throw new UnsupportedOperationException();
 	}
 	
+	/**
+	 * Has every command this game accepts from now on appended to 
+	 * commandLog. Commands that throw an exception, or that return false 
+	 * as they were rejected, are not logged, as they leave the game as it 
+	 * was. 
+	 * @param commandLog  the log, null to stop logging
+	 */
+	void setCommandLog(CommandLog commandLog) {
+		this.commandLog = commandLog;
+	}
+	
+	/**
+	 * Has checkpointStore checkpoint this game at the end of every round.
+	 * @param checkpointStore  the store, null to stop checkpointing
+	 */
+	void setCheckpointStore(CheckpointStore checkpointStore) {
+		this.checkpointStore = checkpointStore;
+	}
+	
+	/**
+	 * Has this game checkpointed once the command in progress is logged, so 
+	 * that the command falls in the segment the checkpoint ends.
+	 */
+	void scheduleCheckpoint() {
+		isCheckpointDue = true;
+	}
+	
+	/**
+	 * Writes where this game is in its round, which its state does not 
+	 * hold: the phase and the phases to return to, the action locations 
+	 * still to be used and the combat in progress.
+	 */
+	void writeProgress(DataOutput out) throws IOException {
+		roundPhase.write(out);
+		out.writeInt(actionLocationsQueue.size());
+		
+		for (ActionLocations actionLocations : actionLocationsQueue) {
+			actionLocations.write(out, integersToObjects);
+		}
+		
+		out.writeBoolean(combat != null);
+		
+		if (combat != null) {
+			combat.write(out, integersToObjects);
+		}
+	}
+	
+	/**
+	 * Restores where this game is in its round, as written by writeProgress
+	 * for a game with the same state. This game must have had no commands 
+	 * since it was created.
+	 * @throws IOException if in does not hold the progress of a game with 
+	 * this game's state
+	 */
+	void readProgress(DataInput in) throws IOException {
+		assert actionLocationsQueue.isEmpty();
+		assert combat == null;
+		
+		try {
+			roundPhase = RoundPhase.read(in);
+			int numActionLocations = in.readInt();
+			
+			for (int i = 0; i < numActionLocations; i++) {
+				actionLocationsQueue.add(
+						ActionLocations.read(in, integersToObjects));
+			}
+			
+			if (in.readBoolean()) {
+				combat = Combat.read(in, integersToObjects);
+			}
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Progress does not match the game state", e);
+		}
+		
+		journal.clear();
+	}
+	
+	//commands before a checkpoint can't be undone, since a game recovered
+	//from the checkpoint would not know them
+	void checkpointIfDue() {
+		if (isCheckpointDue && checkpointStore != null) {
+			isCheckpointDue = false;
+			journal.clear();
+			checkpointStore.checkpoint(this);
+		}
+	}
+	
+	//throws UncheckedIOException if the command, already applied, could not 
+	//be logged
+	private void logCommand(int commandType, int... arguments) {
+		if (commandLog != null) {
+			commandLog.append(commandType, arguments);
+		}
+		
+		checkpointIfDue();
+	}
+	
 	private void nextPhase() {
 		roundPhase.next(this);
+		journal.clear();
 	}
 
+	/**
+	 * Returns what the given faction may see of the game, as a JSON object 
+	 * whose "version" field numbers the view. Tokens placed by other 
+	 * factions are hidden until they are displayed, and the hands of other 
+	 * factions are given only as sizes.
+	 * @param faction  the faction whose view is returned, not null
+	 * @throws IllegalArgumentException if faction is null or not in the game
+	 * @return the view of faction, as JSON
+	 */
 	public String getSnapshotForPlayer(Faction faction) {
-		throw new UnsupportedOperationException();
+		checkFactionInGame(faction);
+		
+		return FactionView.writeSnapshot(integersToObjects, faction, 
+				currentView());
+	}
+	
+	/**
+	 * Returns what changed in the given faction's view of the game since the
+	 * view numbered sinceVersion, as a JSON object holding only the changed 
+	 * locations, players, decks and other fields. If that view is too old 
+	 * to be remembered, the whole view is returned instead, with its 
+	 * "isDelta" field false.
+	 * @param faction  the faction whose view is returned, not null
+	 * @param sinceVersion  the "version" of the last view the faction was 
+	 * sent
+	 * @throws IllegalArgumentException if faction is null or not in the game
+	 * @return the changes to the view of faction, as JSON
+	 */
+	public String getSnapshotDeltaForPlayer(Faction faction, 
+			long sinceVersion) {
+		checkFactionInGame(faction);
+		
+		return getSnapshotDelta(faction, sinceVersion);
+	}
+	
+	/**
+	 * Returns what a spectator may see of the game, which is what every 
+	 * faction sees of the others, as JSON in the same form as 
+	 * getSnapshotForPlayer.
+	 * @return the view of a spectator, as JSON
+	 */
+	public String getSnapshotForSpectator() {
+		return FactionView.writeSnapshot(integersToObjects, null, 
+				currentView());
+	}
+	
+	/**
+	 * Returns what changed in a spectator's view of the game since the view
+	 * numbered sinceVersion, as JSON in the same form as 
+	 * getSnapshotDeltaForPlayer.
+	 * @param sinceVersion  the "version" of the last view the spectator was
+	 * sent
+	 * @return the changes to the view of a spectator, as JSON
+	 */
+	public String getSnapshotDeltaForSpectator(long sinceVersion) {
+		return getSnapshotDelta(null, sinceVersion);
+	}
+	
+	/**
+	 * Returns the number of the current view of the game, which is the 
+	 * "version" of the snapshots returned until the game next changes. 
+	 * Later views have larger numbers.
+	 * @return the number of the current view
+	 */
+	public long getVersion() {
+		return currentView().getNumber();
+	}
+	
+	/**
+	 * Returns a 64-bit Zobrist hash of the state of the game and its current
+	 * phase. Equal states have equal hashes in every process, and unequal 
+	 * states almost never do, so replicas and search can compare hashes 
+	 * instead of states. The hash is kept up to date as the game changes, 
+	 * so this is cheap to call after every command.
+	 * @return the hash of the state of the game
+	 */
+	public long getStateHash() {
+		return gameState.getZobristHash() ^ 
+				ZobristKeys.phase(roundPhase.getCurrentPhase());
+	}
+	
+	//faction is null for spectators
+	private String getSnapshotDelta(Faction faction, long sinceVersion) {
+		FactionView.Version version = currentView();
+		
+		for (FactionView.Version since : views) {
+			if (since.getNumber() == sinceVersion) {
+				return FactionView.writeDelta(integersToObjects, faction, 
+						since, version);
+			}
+		}
+		
+		return FactionView.writeSnapshot(integersToObjects, faction, version);
+	}
+	
+	private void checkFactionInGame(Faction faction) {
+		if (faction == null) {
+			throw new IllegalArgumentException("Null faction");
+		}
+		
+		if (!gameState.getFactions().contains(faction)) {
+			throw new IllegalArgumentException("Faction not in game");
+		}
+	}
+	
+	//numbers a new view if the game state or the visibility of tokens 
+	//changed since the last one; only the newest view caches what was 
+	//written of it
+	private FactionView.Version currentView() {
+		GameStateVersion state = gameState.snapshot();
+		boolean areTokensRevealed = roundPhase.areTokensRevealed();
+		FactionView.Version last = views.peekLast();
+		
+		if (last != null && last.getState() == state && 
+				last.getAreTokensRevealed() == areTokensRevealed) {
+			return last;
+		}
+		
+		FactionView.Version version = new FactionView.Version(
+				last == null ? 1 : last.getNumber() + 1, state, 
+				areTokensRevealed);
+		
+		if (last != null) {
+			last.dropCache();
+		}
+		
+		views.addLast(version);
+		
+		if (views.size() > VIEW_HISTORY_SIZE) {
+			views.removeFirst();
+		}
+		
+		return version;
 	}
 	
 	GameState getGameState() {
@@ -577,12 +1025,16 @@ public final class Game {
 	void beginCombat(Collection<AbstractUnit> attackingUnits, Location source, 
 			Location target) {
 		combat = new Combat(attackingUnits, source, target);
-		Set<Location> adjacentLocations = source.getAdjacentLocations();
+		
+		BoardGraph board = gameState.getBoard();
+		int sourceIndex = source.getIndex();
 		
 		Set<Location> actableLocations = new HashSet<>();
 		
-		for (Location location : adjacentLocations) {
-			AbstractActionToken token = source.getActionToken();
+		for (int k = board.getAdjacencyStart(sourceIndex); 
+				k < board.getAdjacencyEnd(sourceIndex); k++) {
+			Location location = gameState.getLocation(board.getAdjacentIndex(k));
+			AbstractActionToken token = location.getActionToken();
 			
 			if (token != null && token.isUsableDuringCombat()) {
 				actableLocations.add(location);
@@ -592,6 +1044,15 @@ public final class Game {
 		addToActionLocationsQueue(actableLocations);
 	}
 	
+	/**
+	 * Marks every unit of this game as not routed.
+	 */
+	void unrouteUnits() {
+		for (Location location : gameState.getLocations()) {
+			location.unrouteUnits();
+		}
+	}
+	
 	boolean isCombatOccurring() {
 		return combat != null;
 	}
@@ -620,11 +1081,15 @@ public final class Game {
 				(gameState, source, target, unitsInvolved.size());
 		
 		if (isSupplyOkay) {
-			for (AbstractUnit unit : unitsInvolved) {
-				boolean removeResult = source.removeUnit(unit);
-				assert removeResult;
-				target.addUnit(unit);
+			Faction owner = source.getOwner();
+			boolean removeResult = source.removeUnits(unitsInvolved);
+			assert removeResult;
+			
+			if (target.getOwner() == null) {
+				target.changeOwner(owner);
 			}
+			
+			target.addUnits(unitsInvolved);
 		}
 		
 		return isSupplyOkay;
@@ -671,22 +1136,151 @@ public final class Game {
 			for (ActionLocations actionLocations : 
 				tokenPrioritiesToActionLocations.values()) {
 				actionLocationsQueue.add(actionLocations);
+				addedActionLocations.add(actionLocations);
 			}			
 		}
 	}
 	
+	/**
+	 * Empties the action locations queue, so that it may be rebuilt.
+	 */
+	void clearActionLocationsQueue() {
+		actionLocationsQueue.clear();
+		journal.clear();
+	}
+	
 	public void buildActionLocationsQueue() {
 		assert actionLocationsQueue.isEmpty();
 		
-		Set<Location> actableLocations = new HashSet<>();
+		TokenPlacements tokenPlacements = gameState.getTokenPlacements();
 		
-		for (Location location : gameState.getLocations()) {
-			if (location.hasToken() && location.getActionToken().isUsable()) {
-				actableLocations.add(location);
+		for (Faction faction : gameState.getFactions()) {
+			int factionPriority = gameState.getTurnOrderPosition(faction);
+			
+			for (int tokenPriority : tokenPlacements.getPriorities(faction)) {
+				int numLocations = 
+						tokenPlacements.getNumLocations(faction, tokenPriority);
+				
+				if (numLocations == 0 || 
+						tokenPriority == AbstractActionToken.UNUSABLE_MARKER) {
+					continue;
+				}
+				
+				ActionLocations actionLocations = new ActionLocations(faction, 
+						factionPriority, tokenPriority, numLocations);
+				
+				for (int i = 0; i < numLocations; i++) {
+					actionLocations.addLocation(tokenPlacements.getLocation(
+							faction, tokenPriority, i));
+				}
+				
+				actionLocationsQueue.add(actionLocations);
 			}
 		}
 		
-		addToActionLocationsQueue(actableLocations);
+		journal.clear();
+	}
+	
+	/**
+	 * Undoes and redoes the changes a token use made to the action locations
+	 * queue and the combat.
+	 */
+	private final class TokenUse implements CommandJournal.GameChange {
+		private final ActionLocations actionLocations;
+		private final Location tokenLocation;
+		private final boolean wereActionLocationsUsedUp;
+		private final List<ActionLocations> addedActionLocations;
+		private final Combat previousCombat;
+		private final Combat nextCombat;
+		
+		TokenUse(ActionLocations actionLocations, Location tokenLocation, 
+				boolean wereActionLocationsUsedUp, 
+				List<ActionLocations> addedActionLocations, 
+				Combat previousCombat, Combat nextCombat) {
+			this.actionLocations = actionLocations;
+			this.tokenLocation = tokenLocation;
+			this.wereActionLocationsUsedUp = wereActionLocationsUsedUp;
+			this.addedActionLocations = new ArrayList<>(addedActionLocations);
+			this.previousCombat = previousCombat;
+			this.nextCombat = nextCombat;
+		}
+		
+		@Override
+		public void undo() {
+			actionLocationsQueue.removeAll(addedActionLocations);
+			
+			if (wereActionLocationsUsedUp) {
+				actionLocationsQueue.add(actionLocations);
+			}
+			
+			actionLocations.addLocation(tokenLocation);
+			combat = previousCombat;
+		}
+		
+		@Override
+		public void redo() {
+			actionLocations.removeLocation(tokenLocation);
+			
+			if (wereActionLocationsUsedUp) {
+				actionLocationsQueue.remove(actionLocations);
+			}
+			
+			actionLocationsQueue.addAll(addedActionLocations);
+			combat = nextCombat;
+		}
+	}
+	
+	private static final class CombatCardUse 
+			implements CommandJournal.GameChange {
+		private final Combat combat;
+		private final boolean isAttacker;
+		private final AbstractCombatCard previousCombatCard;
+		private final AbstractCombatCard nextCombatCard;
+		
+		CombatCardUse(Combat combat, boolean isAttacker, 
+				AbstractCombatCard previousCombatCard, 
+				AbstractCombatCard nextCombatCard) {
+			this.combat = combat;
+			this.isAttacker = isAttacker;
+			this.previousCombatCard = previousCombatCard;
+			this.nextCombatCard = nextCombatCard;
+		}
+		
+		@Override
+		public void undo() {
+			combat.restoreCombatCard(previousCombatCard, isAttacker);
+		}
+		
+		@Override
+		public void redo() {
+			combat.restoreCombatCard(nextCombatCard, isAttacker);
+		}
+	}
+	
+	private static final class CombatBonusUse 
+			implements CommandJournal.GameChange {
+		private final Combat combat;
+		private final boolean isAttacker;
+		private final int previousCombatBonus;
+		private final int nextCombatBonus;
+		
+		CombatBonusUse(Combat combat, boolean isAttacker, 
+				int previousCombatBonus, int nextCombatBonus) {
+			this.combat = combat;
+			this.isAttacker = isAttacker;
+			this.previousCombatBonus = previousCombatBonus;
+			this.nextCombatBonus = nextCombatBonus;
+		}
+		
+		@Override
+		public void undo() {
+			combat.restoreCombatBonus(previousCombatBonus, isAttacker);
+		}
+		
+		@Override
+		public void redo() {
+			combat.restoreCombatBonus(nextCombatBonus, isAttacker);
+		}
 	}
 	
 	/**
@@ -698,6 +1292,8 @@ public final class Game {
 		private final OneToOneMap<Integer, Location> integersToLocations;
 		private final OneToOneMap<Integer, AbstractActionToken> integersToTokens;
 		private final OneToOneMap<Integer, AbstractUnit> integersToUnits;
+		private final OneToOneMap<Integer, AbstractCombatCard> 
+				integersToCombatCards;
 		
 		IntegersToObjects() {
 			assert gameState != null;
@@ -706,8 +1302,10 @@ public final class Game {
 			integersToLocations = makeLocationsMap();
 			integersToTokens = makeTokensMap();
 			integersToUnits = makeUnitsMap();
+			integersToCombatCards = listToMap(gameState.getCombatCards());
 		}
 		
+		//the id of every location is its index
 		OneToOneMap<Integer, Location> makeLocationsMap() {
 			return listToMap(gameState.getLocations());
 		}
@@ -759,6 +1357,16 @@ public final class Game {
 			return integersToFactions.getKey(faction);
 		}
 		
+		boolean hasFactionId(Faction faction) {
+			assert faction != null;
+			return integersToFactions.containsValue(faction);
+		}
+		
+		void putFactionId(int factionId, Faction faction) {
+			assert faction != null;
+			integersToFactions.put(factionId, faction);
+		}
+		
 		/**
 		 * Returns the location associated with the given location id
 		 * @param locationId  the location id of a certain location
@@ -833,5 +1441,31 @@ public final class Game {
 			
 			return integersToUnits.getKey(unit);
 		}
+		
+		/**
+		 * Returns the combat card associated with the given combat card id
+		 * @param combatCardId  the combat card id of a certain combat card
+		 * @throw IllegalArgumentException if combatCardId is not a valid id
+		 * @return the combat card associated with the given combat card id
+		 */
+		public AbstractCombatCard getCombatCard(int combatCardId) {
+			if (!integersToCombatCards.containsKey(combatCardId)) {
+				throw new IllegalArgumentException("Invalid combat card ID");
+			}
+			
+			AbstractCombatCard result = 
+					integersToCombatCards.getValue(combatCardId);
+			
+			assert result != null;
+			
+			return result;
+		}
+		
+		int getCombatCardId(AbstractCombatCard combatCard) {
+			assert combatCard != null;
+			assert integersToCombatCards.containsValue(combatCard);
+			
+			return integersToCombatCards.getKey(combatCard);
+		}
 	}
 }
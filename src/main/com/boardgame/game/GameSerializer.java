@@ -15,6 +15,20 @@ public class GameSerializer {
 		}
 	}
 	
+	/**
+	 * @return gameState in the binary encoding of GameStateCodec
+	 */
+	static byte[] serializeGameState(GameState gameState) {
+		return GameStateCodec.encode(gameState);
+	}
+	
+	/**
+	 * @throws IOException if bytes were not made by serializeGameState
+	 */
+	static GameState deserializeGameState(byte[] bytes) throws IOException {
+		return GameStateCodec.decode(bytes);
+	}
+	
 	public static void main(String[] args) {
 		GameState gs = GameStateLoader.load(GameStateLoader.GameType.STANDARD_6);
 		System.out.println(serializeGameStateToJson(gs));
@@ -1,5 +1,7 @@
 package com.boardgame.game;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -10,6 +12,7 @@ import com.boardgame.game.AbstractUnit.UnitString;
 
 final class GameState {
 	private final List<Location> locations;
+	private final BoardGraph board;
 	private final Map<Faction, Player> factionsToPlayers;
 	private final List<Faction> turnOrder;
 	private final List<Faction> tieBreakingOrder;
@@ -34,7 +37,22 @@ final class GameState {
 	private final Map<UnitString, AbstractUnit> unitStringsToUnits;
 	private final Map<TokenString, AbstractActionToken> tokenStringsToTokens; 
 	
-	private GameState(List<Location> locations, 
+	private final SupplyTracker supplyTracker;
+	private final ShipTransport shipTransport;
+	private final TokenPlacements tokenPlacements;
+	
+	//the persistent records of the current state, see snapshot
+	private long version;
+	private PersistentArray<LocationRecord> locationRecords;
+	private PersistentArray<PlayerRecord> playerRecords;
+	private GameStateVersion lastVersion;
+	
+	//the Zobrist hash of everything but the players, kept up to date with 
+	//the hash of every location as it was last recorded
+	private long zobristHash;
+	private final long[] locationZobristHashes;
+	
+	private GameState(List<Location> locations, BoardGraph board,
 			Map<Faction, Player> factionsToPlayers, List<Faction> turnOrder, 
 			List<Faction> tieBreakingOrder, List<Faction> specialTokenOrder,
 			List<Integer> specialTokensPerPosition, 
@@ -55,6 +73,14 @@ final class GameState {
 			Map<UnitString, AbstractUnit> unitStringsToUnits,
 			Map<TokenString, AbstractActionToken> tokenStringsToTokens) {
 		assert locations != null;
+		assert board != null;
+		assert board.getNumLocations() == locations.size();
+		
+		for (int i = 0; i < locations.size(); i++) {
+			assert locations.get(i).getIndex() == i;
+			assert locations.get(i).getTerrain() == board.getTerrain(i);
+		}
+		
 		assert factionsToPlayers != null;
 		assert turnOrder != null;
 		assert tieBreakingOrder != null;
@@ -78,6 +104,7 @@ final class GameState {
 		assert tokenStringsToTokens != null;
 		
 		this.locations = locations;
+		this.board = board;
 		this.factionsToPlayers = factionsToPlayers;
 		this.turnOrder = turnOrder;
 		this.tieBreakingOrder = tieBreakingOrder;
@@ -102,6 +129,138 @@ final class GameState {
 		
 		this.unitStringsToUnits = unitStringsToUnits;
 		this.tokenStringsToTokens = tokenStringsToTokens;
+		
+		this.supplyTracker = new SupplyTracker(locations);
+		this.shipTransport = new ShipTransport(locations, board);
+		this.tokenPlacements = new TokenPlacements(locations);
+		
+		List<LocationRecord> initialLocationRecords = 
+				new ArrayList<>(locations.size());
+		LocationRecorder locationRecorder = new LocationRecorder();
+		
+		for (Location location : locations) {
+			location.addObserver(supplyTracker);
+			location.addObserver(shipTransport);
+			location.addObserver(tokenPlacements);
+			location.addObserver(locationRecorder);
+			initialLocationRecords.add(location.toRecord());
+		}
+		
+		List<PlayerRecord> initialPlayerRecords = new ArrayList<>();
+		
+		for (Faction faction : Faction.values()) {
+			Player player = factionsToPlayers.get(faction);
+			initialPlayerRecords.add(player == null ? null : player.toRecord());
+		}
+		
+		this.version = 0;
+		this.locationRecords = PersistentArray.of(initialLocationRecords);
+		this.playerRecords = PersistentArray.of(initialPlayerRecords);
+		this.lastVersion = null;
+		
+		this.locationZobristHashes = new long[locations.size()];
+		this.zobristHash = ZobristKeys.threatLevel(threatLevel) ^ 
+				ZobristKeys.round(round) ^ hashFlags();
+		
+		for (Location location : locations) {
+			locationZobristHashes[location.getIndex()] = 
+					location.getZobristHash();
+			zobristHash ^= location.getZobristHash();
+		}
+	}
+	
+	//keeps locationRecords up to date as locations change
+	private final class LocationRecorder implements LocationObserver {
+		@Override
+		public void unitsChanged(Location location, Faction owner, 
+				int previousNumUnits) {
+			record(location);
+		}
+		
+		@Override
+		public void ownerChanged(Location location, Faction previousOwner) {
+			record(location);
+		}
+		
+		@Override
+		public void tokenChanged(Location location, 
+				AbstractActionToken previousToken) {
+			record(location);
+		}
+		
+		private void record(Location location) {
+			int index = location.getIndex();
+			locationRecords = locationRecords.with(index, location.toRecord());
+			version++;
+			
+			zobristHash ^= locationZobristHashes[index] ^ 
+					location.getZobristHash();
+			locationZobristHashes[index] = location.getZobristHash();
+		}
+	}
+	
+	/**
+	 * Returns the current version of this game state. Taking a version costs 
+	 * O(1) for the board; versions share every record that did not change 
+	 * between them. Calling this again without changes returns the same 
+	 * version.
+	 */
+	GameStateVersion snapshot() {
+		for (Map.Entry<Faction, Player> entry : factionsToPlayers.entrySet()) {
+			int factionIndex = entry.getKey().ordinal();
+			Player player = entry.getValue();
+			
+			if (playerRecords.get(factionIndex).getModCount() != 
+					player.getModCount()) {
+				playerRecords = playerRecords.with(factionIndex, 
+						player.toRecord());
+				version++;
+			}
+		}
+		
+		if (lastVersion == null || lastVersion.getVersion() != version) {
+			lastVersion = new GameStateVersion(version, locationRecords, 
+					playerRecords, this, lastVersion);
+		}
+		
+		return lastVersion;
+	}
+	
+	/**
+	 * Changes this game state from version from, which must be its current 
+	 * state, to version to. Only the locations and players that differ 
+	 * between the two versions are touched.
+	 * @param from  a version equal to the current state, not null
+	 * @param to  a version of this game state, not null
+	 */
+	void restore(GameStateVersion from, GameStateVersion to) {
+		assert from != null;
+		assert to != null;
+		
+		BitSet changedLocations = new BitSet(locations.size());
+		from.getLocations().findDifferences(to.getLocations(), 
+				changedLocations);
+		
+		for (int i = changedLocations.nextSetBit(0); i >= 0; 
+				i = changedLocations.nextSetBit(i + 1)) {
+			assert locations.get(i).toRecord().equals(from.getLocation(i)) : 
+				"Restoring from a version that is not current";
+			locations.get(i).restore(to.getLocation(i), unitStringsToUnits);
+		}
+		
+		for (Map.Entry<Faction, Player> entry : factionsToPlayers.entrySet()) {
+			PlayerRecord record = to.getPlayer(entry.getKey());
+			
+			if (record != from.getPlayer(entry.getKey())) {
+				entry.getValue().restore(record);
+			}
+		}
+		
+		zobristHash ^= hashFlags();
+		hasCombatBonusBeenUsed = to.getHasCombatBonusBeenUsed();
+		hasSightPowerBeenUsed = to.getHasSightPowerBeenUsed();
+		zobristHash ^= hashFlags();
+		version++;
 	}
 	
 	int getNumFactions() {
@@ -116,6 +275,14 @@ final class GameState {
 		return locations;
 	}
 	
+	Location getLocation(int index) {
+		return locations.get(index);
+	}
+	
+	BoardGraph getBoard() {
+		return board;
+	}
+	
 	Map<Faction, Player> getFactionsToPlayers() {
 		return factionsToPlayers;
 	}
@@ -227,11 +394,41 @@ final class GameState {
 	}
 	
 	void setHasSightPowerBeenUsed(boolean hasSightPowerBeenUsed) {
+		zobristHash ^= hashFlags();
 		this.hasSightPowerBeenUsed = hasSightPowerBeenUsed;
+		zobristHash ^= hashFlags();
+		version++;
 	}
 	
 	void setHasCombatBonusBeenUsed(boolean hasCombatBonusBeenUsed) {
+		zobristHash ^= hashFlags();
 		this.hasCombatBonusBeenUsed = hasCombatBonusBeenUsed;
+		zobristHash ^= hashFlags();
+		version++;
+	}
+	
+	private long hashFlags() {
+		return ZobristKeys.hasCombatBonusBeenUsed(hasCombatBonusBeenUsed) ^ 
+				ZobristKeys.hasSightPowerBeenUsed(hasSightPowerBeenUsed);
+	}
+	
+	/**
+	 * Returns the Zobrist hash of this game state: its locations' owners, 
+	 * units and tokens, its players' cash, cards, units and tokens, the 
+	 * threat level, the round and the used flags. Equal states have equal 
+	 * hashes in every process. The hash is kept up to date by every change, 
+	 * so this costs O(number of factions).
+	 */
+	long getZobristHash() {
+		long result = zobristHash;
+		
+		//players do not know their faction, so their hashes are keyed here
+		for (Map.Entry<Faction, Player> entry : factionsToPlayers.entrySet()) {
+			result ^= ZobristKeys.player(entry.getKey(), 
+					entry.getValue().getZobristHash());
+		}
+		
+		return result;
 	}
 	
 	Map<UnitString, AbstractUnit> getUnitStringsToUnits() {
@@ -242,6 +439,18 @@ final class GameState {
 		return tokenStringsToTokens;
 	}
 	
+	SupplyTracker getSupplyTracker() {
+		return supplyTracker;
+	}
+	
+	ShipTransport getShipTransport() {
+		return shipTransport;
+	}
+	
+	TokenPlacements getTokenPlacements() {
+		return tokenPlacements;
+	}
+	
 	int getNumSpecialTokensForFaction(Faction faction) {
 		assert faction != null;
 		
@@ -251,6 +460,7 @@ final class GameState {
 	
 	static class Builder {
 		private List<Location> locations;
+		private BoardGraph board;
 		private Map<Faction, Player> factionsToPlayers;
 		private List<Faction> turnOrder;
 		private List<Faction> tieBreakingOrder;
@@ -284,6 +494,11 @@ final class GameState {
 			return this;
 		}
 		
+		Builder setBoard(BoardGraph board) {
+			this.board = board;
+			return this;
+		}
+		
 		Builder setFactionsToPlayers(Map<Faction, Player> factionsToPlayers) {
 			this.factionsToPlayers = factionsToPlayers;
 			return this;
@@ -400,7 +615,7 @@ final class GameState {
 		}
 		
 		GameState build() {
-			return new GameState(locations, factionsToPlayers, turnOrder, 
+			return new GameState(locations, board, factionsToPlayers, turnOrder, 
 					tieBreakingOrder, specialTokenOrder, specialTokensPerPosition, 
 					factionsToSupplyPositions, supplyLimits, factionsToNumBases, 
 					threatLevel, round, eventCards1Stack, eventCards1Discard, 
@@ -0,0 +1,685 @@
+package com.boardgame.game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import com.boardgame.game.AbstractActionToken.TokenString;
+import com.boardgame.game.AbstractUnit.UnitString;
+import com.boardgame.game.Location.Terrain;
+
+/**
+ * A compact binary encoding of a whole game state, board included, that can
+ * be read back without the files the state was loaded from.
+ *
+ * Locations, units, tokens, factions and cards are written as dense ids:
+ * location indexes, enum ordinals and positions in the state's card lists.
+ * Numbers are written as variable-length ints, so the many zero counts of
+ * a board cost a byte each. The encoding starts with MAGIC and
+ * FORMAT_VERSION, and read and write visit the sections in the same order.
+ * Sets and maps are written in order of their ids, so equal states have
+ * equal encodings.
+ *
+ */
+final class GameStateCodec {
+	static final int MAGIC = 0x47535442;
+	static final int FORMAT_VERSION = 2;
+	
+	private static final int NO_ID = -1;
+	
+	private GameStateCodec() {
+		//not called
+	}
+	
+	static byte[] encode(GameState gameState) {
+		assert gameState != null;
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		try {
+			write(gameState, new DataOutputStream(bytes));
+		} catch (IOException e) {
+			//byte array streams don't throw
+			throw new UncheckedIOException(e);
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * @throws IOException if bytes do not hold an encoded game state
+	 */
+	static GameState decode(byte[] bytes) throws IOException {
+		assert bytes != null;
+		return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+	
+	static void write(GameState gameState, DataOutput out) throws IOException {
+		assert gameState != null;
+		assert out != null;
+		
+		out.writeInt(MAGIC);
+		writeVarInt(out, FORMAT_VERSION);
+		
+		writeBoard(gameState, out);
+		writeLocations(gameState, out);
+		
+		List<AbstractCombatCard> combatCards = gameState.getCombatCards();
+		writeCombatCards(combatCards, out);
+		writePlayers(gameState, combatCards, out);
+		
+		writeFactions(gameState.getTurnOrder(), out);
+		writeFactions(gameState.getTieBreakingOrder(), out);
+		writeFactions(gameState.getSpecialTokenOrder(), out);
+		writeIntegers(gameState.getSpecialTokensPerPosition(), out);
+		writeFactionsToIntegers(gameState.getFactionsToSupplyPositions(), out);
+		
+		List<List<Integer>> supplyLimits = gameState.getSupplyLimits();
+		writeVarInt(out, supplyLimits.size());
+		
+		for (List<Integer> limits : supplyLimits) {
+			writeIntegers(limits, out);
+		}
+		
+		writeFactionsToIntegers(gameState.getFactionsToNumBases(), out);
+		writeVarInt(out, gameState.getThreatLevel());
+		writeVarInt(out, gameState.getRound());
+		
+		writeDeck(gameState.getEventCards1Stack(),
+				gameState.getEventCards1Discard(), out);
+		writeDeck(gameState.getEventCards2Stack(),
+				gameState.getEventCards2Discard(), out);
+		writeDeck(gameState.getEventCards3Stack(),
+				gameState.getEventCards3Discard(), out);
+		writeDeck(gameState.getThreatCardsStack(),
+				gameState.getThreatCardsDiscard(), out);
+		
+		out.writeBoolean(gameState.getHasCombatBonusBeenUsed());
+		out.writeBoolean(gameState.getHasSightPowerBeenUsed());
+	}
+	
+	/**
+	 * @throws IOException if in does not hold an encoded game state
+	 */
+	static GameState read(DataInput in) throws IOException {
+		assert in != null;
+		
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not an encoded game state");
+		}
+		
+		int formatVersion = readVarInt(in);
+		
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException("Unsupported game state version "
+					+ formatVersion);
+		}
+		
+		GameState.Builder builder = new GameState.Builder();
+		
+		List<Location> locations = new ArrayList<>();
+		builder.setBoard(readBoard(in, locations));
+		readLocations(in, locations);
+		builder.setLocations(locations);
+		
+		List<AbstractCombatCard> combatCards = readCombatCards(in);
+		builder.setCombatCards(combatCards)
+			.setFactionsToPlayers(readPlayers(in, combatCards));
+		
+		builder.setTurnOrder(readFactions(in))
+			.setTieBreakingOrder(readFactions(in))
+			.setSpecialTokenOrder(readFactions(in))
+			.setSpecialTokensPerPosition(readIntegers(in))
+			.setFactionsToSupplyPositions(readFactionsToIntegers(in));
+		
+		int numSupplyLimits = readVarInt(in);
+		List<List<Integer>> supplyLimits = new ArrayList<>(numSupplyLimits);
+		
+		for (int i = 0; i < numSupplyLimits; i++) {
+			supplyLimits.add(readIntegers(in));
+		}
+		
+		builder.setSupplyLimits(supplyLimits)
+			.setFactionsToNumBases(readFactionsToIntegers(in))
+			.setThreatLevel(readVarInt(in))
+			.setRound(readVarInt(in));
+		
+		List<Queue<AbstractEventCard>> eventCards1 = readDeck(in);
+		List<Queue<AbstractEventCard>> eventCards2 = readDeck(in);
+		List<Queue<AbstractEventCard>> eventCards3 = readDeck(in);
+		List<Queue<AbstractThreatCard>> threatCards = readDeck(in);
+		
+		builder.setEventCards1Stack(eventCards1.get(0))
+			.setEventCards1Discard(eventCards1.get(1))
+			.setEventCards2Stack(eventCards2.get(0))
+			.setEventCards2Discard(eventCards2.get(1))
+			.setEventCards3Stack(eventCards3.get(0))
+			.setEventCards3Discard(eventCards3.get(1))
+			.setThreatCardsStack(threatCards.get(0))
+			.setThreatCardsDiscard(threatCards.get(1));
+		
+		builder.setHasCombatBonusBeenUsed(in.readBoolean())
+			.setHasSightPowerBeenUsed(in.readBoolean())
+			.setUnitStringsToUnits(GameStateLoader.getUnitStringsToUnits())
+			.setTokenStringsToTokens(GameStateLoader.getTokenStringsToTokens());
+		
+		return builder.build();
+	}
+	
+	//the parts of locations that never change, and their adjacencies
+	private static void writeBoard(GameState gameState, DataOutput out)
+			throws IOException {
+		BoardGraph board = gameState.getBoard();
+		writeVarInt(out, board.getNumLocations());
+		
+		for (Location location : gameState.getLocations()) {
+			out.writeUTF(location.getName());
+			writeVarInt(out, location.getTerrain().ordinal());
+			writeVarInt(out, location.getSupply());
+			writeVarInt(out, location.getInvest());
+			
+			Base base = location.getBaseStrength();
+			writeVarInt(out, base == null ? 0 : base.getSize());
+			
+			if (base != null) {
+				writeVarInt(out, base.getDefense());
+			}
+			
+			//each adjacency once, from its lower index, as sorted gaps
+			int index = location.getIndex();
+			int numHigher = 0;
+			
+			for (int k = board.getAdjacencyStart(index);
+					k < board.getAdjacencyEnd(index); k++) {
+				if (board.getAdjacentIndex(k) > index) {
+					numHigher++;
+				}
+			}
+			
+			writeVarInt(out, numHigher);
+			int previous = index;
+			
+			for (int k = board.getAdjacencyStart(index);
+					k < board.getAdjacencyEnd(index); k++) {
+				int adjacent = board.getAdjacentIndex(k);
+				
+				if (adjacent > index) {
+					writeVarInt(out, adjacent - previous);
+					previous = adjacent;
+				}
+			}
+		}
+	}
+	
+	private static BoardGraph readBoard(DataInput in, List<Location> locations)
+			throws IOException {
+		int numLocations = readVarInt(in);
+		BoardGraph.Builder builder = new BoardGraph.Builder(numLocations);
+		
+		for (int index = 0; index < numLocations; index++) {
+			String name = in.readUTF();
+			Terrain terrain = Terrain.values()[readVarInt(in)];
+			int supply = readVarInt(in);
+			int invest = readVarInt(in);
+			int baseSize = readVarInt(in);
+			Base base = null;
+			
+			if (baseSize > 0) {
+				//whether defense is active is read with the rest of the state
+				base = new Base(new Base(baseSize), readVarInt(in), true);
+			}
+			
+			locations.add(new Location(index, name, terrain, base, supply,
+					invest));
+			builder.setTerrain(index, terrain);
+			
+			int numHigher = readVarInt(in);
+			int previous = index;
+			
+			for (int i = 0; i < numHigher; i++) {
+				int adjacent = previous + readVarInt(in);
+				builder.addAdjacency(index, adjacent);
+				previous = adjacent;
+			}
+		}
+		
+		return builder.build();
+	}
+	
+	//the parts of locations that change during play
+	private static void writeLocations(GameState gameState, DataOutput out)
+			throws IOException {
+		for (Location location : gameState.getLocations()) {
+			LocationRecord record = location.toRecord();
+			
+			writeId(out, record.getOwner());
+			writeId(out, record.getActionToken() == null ? null :
+				record.getActionToken().getTokenString());
+			out.writeBoolean(record.getIsBaseDefenseActive());
+			
+			for (UnitString unitString : UnitString.values()) {
+				writeVarInt(out, record.getNumUnits(unitString));
+				writeVarInt(out, record.getNumRoutedUnits(unitString));
+			}
+		}
+	}
+	
+	private static void readLocations(DataInput in, List<Location> locations)
+			throws IOException {
+		Map<TokenString, AbstractActionToken> tokenStringsToTokens =
+				GameStateLoader.getTokenStringsToTokens();
+		int numUnitStrings = UnitString.values().length;
+		
+		for (Location location : locations) {
+			int ownerId = readId(in);
+			int tokenId = readId(in);
+			boolean isBaseDefenseActive = in.readBoolean();
+			int[] unitCounts = new int[numUnitStrings];
+			int[] routedUnitCounts = new int[numUnitStrings];
+			
+			for (int i = 0; i < numUnitStrings; i++) {
+				unitCounts[i] = readVarInt(in);
+				routedUnitCounts[i] = readVarInt(in);
+			}
+			
+			location.restore(new LocationRecord(
+					ownerId == NO_ID ? null : Faction.values()[ownerId],
+					unitCounts, routedUnitCounts, tokenId == NO_ID ? null :
+						tokenStringsToTokens.get(TokenString.values()[tokenId]),
+					isBaseDefenseActive), GameStateLoader.getUnitStringsToUnits());
+		}
+	}
+	
+	private static void writeCombatCards(List<AbstractCombatCard> combatCards,
+			DataOutput out) throws IOException {
+		writeVarInt(out, combatCards.size());
+		
+		for (AbstractCombatCard combatCard : combatCards) {
+			out.writeUTF(combatCard.getName());
+			writeVarInt(out, combatCard.getStrength());
+			writeVarInt(out, combatCard.getKillingPotential());
+			writeVarInt(out, combatCard.getDeathDefense());
+		}
+	}
+	
+	private static List<AbstractCombatCard> readCombatCards(DataInput in)
+			throws IOException {
+		int numCombatCards = readVarInt(in);
+		List<AbstractCombatCard> result = new ArrayList<>(numCombatCards);
+		
+		for (int i = 0; i < numCombatCards; i++) {
+			result.add(new StandardCombatCard(in.readUTF(), readVarInt(in),
+					readVarInt(in), readVarInt(in)));
+		}
+		
+		return result;
+	}
+	
+	private static void writePlayers(GameState gameState,
+			List<AbstractCombatCard> combatCards, DataOutput out)
+			throws IOException {
+		Map<AbstractCombatCard, Integer> combatCardIds = findIds(combatCards);
+		Map<Faction, Player> factionsToPlayers = new EnumMap<>(Faction.class);
+		factionsToPlayers.putAll(gameState.getFactionsToPlayers());
+		writeVarInt(out, factionsToPlayers.size());
+		
+		for (Map.Entry<Faction, Player> entry : factionsToPlayers.entrySet()) {
+			PlayerRecord record = entry.getValue().toRecord();
+			
+			writeVarInt(out, entry.getKey().ordinal());
+			writeVarInt(out, record.getNumSpecialTokensUsed());
+			writeVarInt(out, record.getCashInHand());
+			writeVarInt(out, record.getCashPool());
+			writeCombatCardIds(record.getCombatCardsInHand(), combatCardIds,
+					out);
+			writeCombatCardIds(record.getCombatCardsDiscard(), combatCardIds,
+					out);
+			
+			int[] unitIds = new int[record.getUnitsInHand().size()];
+			int i = 0;
+			
+			for (AbstractUnit unit : record.getUnitsInHand()) {
+				unitIds[i++] = unit.getUnitString().ordinal();
+			}
+			
+			writeSortedIds(unitIds, out);
+			
+			int[] tokenIds = new int[record.getTokens().size()];
+			i = 0;
+			
+			for (AbstractActionToken token : record.getTokens()) {
+				tokenIds[i++] = token.getTokenString().ordinal();
+			}
+			
+			writeSortedIds(tokenIds, out);
+		}
+	}
+	
+	private static Map<Faction, Player> readPlayers(DataInput in,
+			List<AbstractCombatCard> combatCards) throws IOException {
+		Map<UnitString, AbstractUnit> unitStringsToUnits =
+				GameStateLoader.getUnitStringsToUnits();
+		Map<TokenString, AbstractActionToken> tokenStringsToTokens =
+				GameStateLoader.getTokenStringsToTokens();
+		Map<Faction, Player> result = new EnumMap<>(Faction.class);
+		int numPlayers = readVarInt(in);
+		
+		for (int i = 0; i < numPlayers; i++) {
+			Faction faction = Faction.values()[readVarInt(in)];
+			int numSpecialTokensUsed = readVarInt(in);
+			int cashInHand = readVarInt(in);
+			int cashPool = readVarInt(in);
+			Set<AbstractCombatCard> combatCardsInHand =
+					readCombatCardIds(in, combatCards);
+			Set<AbstractCombatCard> combatCardsDiscard =
+					readCombatCardIds(in, combatCards);
+			
+			int numUnits = readVarInt(in);
+			Collection<AbstractUnit> unitsInHand = new ArrayList<>(numUnits);
+			
+			for (int n = 0; n < numUnits; n++) {
+				unitsInHand.add(unitStringsToUnits.get(
+						UnitString.values()[readVarInt(in)]));
+			}
+			
+			int numTokens = readVarInt(in);
+			Set<AbstractActionToken> tokens = new HashSet<>();
+			
+			for (int n = 0; n < numTokens; n++) {
+				tokens.add(tokenStringsToTokens.get(
+						TokenString.values()[readVarInt(in)]));
+			}
+			
+			PlayerRecord record = new PlayerRecord(combatCardsInHand,
+					combatCardsDiscard, unitsInHand, tokens,
+					numSpecialTokensUsed, cashInHand, cashPool, 0);
+			Player player = new Player(combatCardsInHand, combatCardsDiscard,
+					unitsInHand, cashPool, cashInHand);
+			player.restore(record);
+			result.put(faction, player);
+		}
+		
+		return result;
+	}
+	
+	private static void writeCombatCardIds(Set<AbstractCombatCard> combatCards,
+			Map<AbstractCombatCard, Integer> combatCardIds, DataOutput out)
+			throws IOException {
+		int[] ids = new int[combatCards.size()];
+		int i = 0;
+		
+		for (AbstractCombatCard combatCard : combatCards) {
+			ids[i++] = combatCardIds.get(combatCard);
+		}
+		
+		writeSortedIds(ids, out);
+	}
+	
+	//the ids of the elements of a set, which has no order of its own
+	private static void writeSortedIds(int[] ids, DataOutput out)
+			throws IOException {
+		Arrays.sort(ids);
+		writeVarInt(out, ids.length);
+		
+		for (int id : ids) {
+			writeVarInt(out, id);
+		}
+	}
+	
+	private static Set<AbstractCombatCard> readCombatCardIds(DataInput in,
+			List<AbstractCombatCard> combatCards) throws IOException {
+		int numCombatCards = readVarInt(in);
+		Set<AbstractCombatCard> result = new HashSet<>();
+		
+		for (int i = 0; i < numCombatCards; i++) {
+			result.add(combatCards.get(readVarInt(in)));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Writes the cards of a deck once each, as their JSON from the scenario
+	 * in UTF-8, followed by the ids of the stack and discard pile in that 
+	 * table.
+	 */
+	private static <T> void writeDeck(Queue<T> stack, Queue<T> discard,
+			DataOutput out) throws IOException {
+		List<T> cards = new ArrayList<>();
+		cards.addAll(stack);
+		cards.addAll(discard);
+		
+		Map<T, Integer> cardIds = findIds(cards);
+		List<T> table = new ArrayList<>(cardIds.size());
+		
+		for (T card : cards) {
+			if (cardIds.get(card) == table.size()) {
+				table.add(card);
+			}
+		}
+		
+		writeVarInt(out, table.size());
+		
+		for (T card : table) {
+			byte[] json = JSONValue.toJSONString(sortKeys(card))
+					.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, json.length);
+			out.write(json);
+		}
+		
+		for (Queue<T> pile : Arrays.asList(stack, discard)) {
+			writeVarInt(out, pile.size());
+			
+			for (T card : pile) {
+				writeVarInt(out, cardIds.get(card));
+			}
+		}
+	}
+	
+	/**
+	 * @return the stack and discard pile of a deck
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> List<Queue<T>> readDeck(DataInput in)
+			throws IOException {
+		int numCards = readVarInt(in);
+		List<T> table = new ArrayList<>(numCards);
+		JSONParser parser = new JSONParser();
+		
+		for (int i = 0; i < numCards; i++) {
+			try {
+				//cards are kept as the JSON objects they were loaded from
+				byte[] json = new byte[readVarInt(in)];
+				in.readFully(json);
+				table.add((T) parser.parse(
+						new String(json, StandardCharsets.UTF_8)));
+			} catch (ParseException e) {
+				throw new IOException("Corrupt card", e);
+			}
+		}
+		
+		List<Queue<T>> result = new ArrayList<>(2);
+		
+		for (int pile = 0; pile < 2; pile++) {
+			Queue<T> cards = new LinkedList<>();
+			
+			for (int n = readVarInt(in); n > 0; n--) {
+				cards.add(table.get(readVarInt(in)));
+			}
+			
+			result.add(cards);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return value, a card or part of one, with the keys of each of its 
+	 * objects in order, so that equal cards are written the same
+	 */
+	private static Object sortKeys(Object value) {
+		if (value instanceof Map) {
+			Map<String, Object> result = new TreeMap<>();
+			
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				result.put(String.valueOf(entry.getKey()), 
+						sortKeys(entry.getValue()));
+			}
+			
+			return result;
+		}
+		
+		if (value instanceof List) {
+			List<Object> result = new ArrayList<>();
+			
+			for (Object element : (List<?>) value) {
+				result.add(sortKeys(element));
+			}
+			
+			return result;
+		}
+		
+		return value;
+	}
+	
+	//the position of the first occurrence of each element, by identity
+	private static <T> Map<T, Integer> findIds(List<T> elements) {
+		Map<T, Integer> result = new IdentityHashMap<>();
+		int nextId = 0;
+		
+		for (T element : elements) {
+			if (!result.containsKey(element)) {
+				result.put(element, nextId++);
+			}
+		}
+		
+		return result;
+	}
+	
+	private static void writeFactions(List<Faction> factions, DataOutput out)
+			throws IOException {
+		writeVarInt(out, factions.size());
+		
+		for (Faction faction : factions) {
+			writeVarInt(out, faction.ordinal());
+		}
+	}
+	
+	private static List<Faction> readFactions(DataInput in) throws IOException {
+		int numFactions = readVarInt(in);
+		List<Faction> result = new ArrayList<>(numFactions);
+		
+		for (int i = 0; i < numFactions; i++) {
+			result.add(Faction.values()[readVarInt(in)]);
+		}
+		
+		return result;
+	}
+	
+	private static void writeIntegers(List<Integer> integers, DataOutput out)
+			throws IOException {
+		writeVarInt(out, integers.size());
+		
+		for (int integer : integers) {
+			writeVarInt(out, integer);
+		}
+	}
+	
+	private static List<Integer> readIntegers(DataInput in) throws IOException {
+		int numIntegers = readVarInt(in);
+		List<Integer> result = new ArrayList<>(numIntegers);
+		
+		for (int i = 0; i < numIntegers; i++) {
+			result.add(readVarInt(in));
+		}
+		
+		return result;
+	}
+	
+	private static void writeFactionsToIntegers(
+			Map<Faction, Integer> factionsToIntegers, DataOutput out)
+			throws IOException {
+		Map<Faction, Integer> sorted = new EnumMap<>(Faction.class);
+		sorted.putAll(factionsToIntegers);
+		writeVarInt(out, sorted.size());
+		
+		for (Map.Entry<Faction, Integer> entry : sorted.entrySet()) {
+			writeVarInt(out, entry.getKey().ordinal());
+			writeVarInt(out, entry.getValue());
+		}
+	}
+	
+	private static Map<Faction, Integer> readFactionsToIntegers(DataInput in)
+			throws IOException {
+		Map<Faction, Integer> result = new EnumMap<>(Faction.class);
+		
+		for (int n = readVarInt(in); n > 0; n--) {
+			result.put(Faction.values()[readVarInt(in)], readVarInt(in));
+		}
+		
+		return result;
+	}
+	
+	//an enum constant as its ordinal, or NO_ID for null
+	private static void writeId(DataOutput out, Enum<?> constant)
+			throws IOException {
+		writeVarInt(out, constant == null ? NO_ID : constant.ordinal());
+	}
+	
+	private static int readId(DataInput in) throws IOException {
+		return readVarInt(in);
+	}
+	
+	/**
+	 * Writes value in as few bytes as it needs, seven bits to a byte, low
+	 * bits first. Small negative values, such as NO_ID, are zigzag encoded
+	 * so that they stay small.
+	 */
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		int zigzag = (value << 1) ^ (value >> 31);
+		
+		while ((zigzag & ~0x7f) != 0) {
+			out.writeByte((zigzag & 0x7f) | 0x80);
+			zigzag >>>= 7;
+		}
+		
+		out.writeByte(zigzag);
+	}
+	
+	static int readVarInt(DataInput in) throws IOException {
+		int zigzag = 0;
+		
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readByte();
+			zigzag |= (b & 0x7f) << shift;
+			
+			if ((b & 0x80) == 0) {
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+			}
+		}
+		
+		throw new IOException("Malformed variable-length int");
+	}
+}
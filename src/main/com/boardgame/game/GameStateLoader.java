@@ -1,77 +1,134 @@
 package com.boardgame.game;
 
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import com.boardgame.game.AbstractActionToken.TokenString;
 import com.boardgame.game.AbstractUnit.UnitString;
-import com.boardgame.game.Location.Terrain;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 
 /**
  * Loads game state from a variety of sources.
  *
+ * The files the game ships with, such as the standard board, are found as 
+ * classpath resources, so they load from a jar whatever the working 
+ * directory; when running from a source tree without them on the 
+ * classpath, they are found relative to the working directory instead.
+ *
  */
 public final class GameStateLoader {
-	private static final String BOARD_PATH = "res/board.json";
-	private static final String STANDARD_6_PATH = "res/standardGame6.json";
+	static final String BOARD_RESOURCE = "res/board.json";
+	private static final String STANDARD_6_RESOURCE = "res/standardGame6.json";
+	
+	//shared by every loaded game, so never modified after initialization
+	private static final Map<UnitString, AbstractUnit> unitStringsToUnits;
+	private static final Map<TokenString, AbstractActionToken> tokenStringsToTokens;
+	
+	//the boards parsed so far, by the URL of their file or resource, which 
+	//is assumed never to change
+	private static final Map<String, BoardTemplate> boardTemplates = 
+			new ConcurrentHashMap<>();
 	
-	private static final Map<UnitString, AbstractUnit> unitStringsToUnits = 
-			new HashMap<UnitString, AbstractUnit>();
-	private static final Map<TokenString, AbstractActionToken> tokenStringsToTokens = 
-			new HashMap<TokenString, AbstractActionToken>();
+	//the encoded initial state of each game type: from the shipped scenario
+	//pack or, for game types it lacks, compiled from their files when they
+	//are first loaded
+	private static final Map<GameType, byte[]> gameTypesToEncodedStates = 
+			new ConcurrentHashMap<>();
 	
 	static {
-		unitStringsToUnits.put(UnitString.INFANTRY, new InfantryUnit());
-		unitStringsToUnits.put(UnitString.ADVANCED, new AdvancedUnit());
-		unitStringsToUnits.put(UnitString.SHIP, new ShipUnit());
-		unitStringsToUnits.put(UnitString.BASE_ASSAULT, new BaseAssaultUnit());
+		Map<UnitString, AbstractUnit> units = 
+				new EnumMap<>(UnitString.class);
+		Map<TokenString, AbstractActionToken> tokens = 
+				new EnumMap<>(TokenString.class);
+		
+		units.put(UnitString.INFANTRY, new InfantryUnit());
+		units.put(UnitString.ADVANCED, new AdvancedUnit());
+		units.put(UnitString.SHIP, new ShipUnit());
+		units.put(UnitString.BASE_ASSAULT, new BaseAssaultUnit());
 		
 		AbstractActionToken token;
 		token = new MoveToken(false, -1);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new MoveToken(false, 0);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new MoveToken(true, 1);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new InvestToken(false);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new InvestToken(false);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new InvestToken(true);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new BlitzToken(false);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new BlitzToken(false);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new BlitzToken(true);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new DefenseToken(false, 1);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new DefenseToken(false, 1);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new DefenseToken(true, 2);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new AssistToken(false, 1);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new AssistToken(false, 1);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
 		token = new AssistToken(true, 2);
-		tokenStringsToTokens.put(token.getTokenString(), token);
+		tokens.put(token.getTokenString(), token);
+		
+		unitStringsToUnits = Collections.unmodifiableMap(units);
+		tokenStringsToTokens = Collections.unmodifiableMap(tokens);
+	}
+	
+	/**
+	 * @return the units shared by every loaded game
+	 */
+	static Map<UnitString, AbstractUnit> getUnitStringsToUnits() {
+		return unitStringsToUnits;
+	}
+	
+	/**
+	 * @return the tokens shared by every loaded game
+	 */
+	static Map<TokenString, AbstractActionToken> getTokenStringsToTokens() {
+		return tokenStringsToTokens;
 	}
 	
 	enum GameType {
@@ -79,7 +136,28 @@ public final class GameStateLoader {
 	}
 	
 	/**
-	 * Loads a game with the given game type
+	 * Does ahead of time the work that the first load would otherwise do 
+	 * for every later one: compiling the schemas of the game files and 
+	 * parsing the standard board. Calling this is optional.
+	 */
+	public static void prewarm() {
+		try {
+			ValidateJsonFiles.prewarm();
+		} catch (IOException | ProcessingException e) {
+			throw new AssertionError(e);
+		}
+		
+		findStandardBoardTemplate();
+	}
+	
+	/**
+	 * Loads a game with the given game type. Its state is decoded from the 
+	 * scenario pack, without parsing or validating its files.
+	 * 
+	 * The state of each game type is fixed the first time it is loaded, for
+	 * the life of the process: changes to its files are not seen, even by a
+	 * GameTypeRegistry open on them. To create games from files that may 
+	 * change, use GameTypeRegistry.newGameState instead.
 	 * @param gameType  the type of the game to load, not null
 	 * @throws IllegalArgumentException if gameType is null
 	 * @return the state of the loaded game
@@ -90,18 +168,54 @@ public final class GameStateLoader {
 		}
 		
 		try {
-			switch (gameType) {
-				case STANDARD_6 :
-					return load(STANDARD_6_PATH);
-				default :
-					throw new IllegalStateException("Game type not in switch "
-							+ "statement: " + gameType);
-			}
-		} catch (IOException | ParseException | SchemaMatchingException e) {
+			return GameStateCodec.decode(findEncodedState(gameType));
+		} catch (IOException e) {
 			throw new AssertionError(e);
 		}
 	}
 	
+	/**
+	 * @return the name of the resource with the scenario of gameType
+	 */
+	static String getResourceName(GameType gameType) {
+		assert gameType != null;
+		
+		switch (gameType) {
+			case STANDARD_6 :
+				return STANDARD_6_RESOURCE;
+			default :
+				throw new IllegalStateException("Game type not in switch "
+						+ "statement: " + gameType);
+		}
+	}
+	
+	private static byte[] findEncodedState(GameType gameType) {
+		byte[] result = gameTypesToEncodedStates.get(gameType);
+		
+		if (result == null) {
+			result = ShippedScenarioPack.pack.getEncodedState(gameType);
+			
+			if (result == null) {
+				try {
+					result = GameStateCodec.encode(
+							loadResource(getResourceName(gameType)));
+				} catch (IOException | ParseException | 
+						SchemaMatchingException e) {
+					throw new AssertionError(e);
+				}
+			}
+			
+			byte[] previous = gameTypesToEncodedStates.putIfAbsent(gameType, 
+					result);
+			
+			if (previous != null) {
+				result = previous;
+			}
+		}
+		
+		return result;
+	}
+	
 	/**
 	 * Loads game state from the file with the given filePath.
 	 * @param filePath  the path to the file with the game state
@@ -112,14 +226,308 @@ public final class GameStateLoader {
 	 */
 	public static GameState load(String filePath) 
 			throws IOException, ParseException, SchemaMatchingException {
-		if (!ValidateJsonFiles.validateVariableGameState(filePath)) {
-			throw new SchemaMatchingException();
+		BoardTemplate boardTemplate = findStandardBoardTemplate();
+		
+		try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+			return load(in, boardTemplate);
+		}
+	}
+	
+	/**
+	 * Loads game state from in, played on the standard board. in is read 
+	 * as UTF-8 JSON up to the end of the game state, and is not closed.
+	 * @param in  the stream with the game state, not null
+	 * @throws IllegalArgumentException if in is null
+	 * @throws IOException if something goes wrong reading in
+	 * @throws ParseException if in could not be parsed correctly
+	 * @throws SchemaMatchingException if in does not match its schema
+	 * @return the state of the loaded game
+	 */
+	public static GameState load(InputStream in) 
+			throws IOException, ParseException, SchemaMatchingException {
+		if (in == null) {
+			throw new IllegalArgumentException("Input stream was null.");
+		}
+		
+		return load(in, findStandardBoardTemplate());
+	}
+	
+	/**
+	 * Loads game state from the resource with the given resourceName, 
+	 * played on the standard board. The resource is found like the files 
+	 * the game ships with.
+	 * @param resourceName  the name of the resource, as given to 
+	 * ClassLoader.getResource, such as "res/standardGame6.json", not null
+	 * @throws IllegalArgumentException if resourceName is null
+	 * @throws FileNotFoundException if there is no such resource
+	 * @throws IOException if something goes wrong reading the resource
+	 * @throws ParseException if the resource could not be parsed correctly
+	 * @throws SchemaMatchingException if the resource does not match its 
+	 * schema
+	 * @return the state of the loaded game
+	 */
+	public static GameState loadResource(String resourceName) 
+			throws IOException, ParseException, SchemaMatchingException {
+		if (resourceName == null) {
+			throw new IllegalArgumentException("Resource name was null.");
+		}
+		
+		BoardTemplate boardTemplate = findStandardBoardTemplate();
+		
+		try (InputStream in = findResource(resourceName).openStream()) {
+			return load(in, boardTemplate);
+		}
+	}
+	
+	/**
+	 * Loads game state from the bytes of buffer between its position and 
+	 * its limit, as UTF-8 JSON, played on the standard board. The bytes are
+	 * parsed where they are, without copying them, so a buffer mapped from a
+	 * file with FileChannel.map is parsed straight from the mapped pages. 
+	 * The position of buffer is not changed.
+	 * @param buffer  the buffer with the game state, not null
+	 * @throws IllegalArgumentException if buffer is null
+	 * @throws IOException if something goes wrong reading buffer
+	 * @throws ParseException if buffer could not be parsed correctly
+	 * @throws SchemaMatchingException if buffer does not match its schema
+	 * @return the state of the loaded game
+	 */
+	public static GameState load(ByteBuffer buffer) 
+			throws IOException, ParseException, SchemaMatchingException {
+		if (buffer == null) {
+			throw new IllegalArgumentException("Buffer was null.");
 		}
 		
-		FileReader fileReader = new FileReader(filePath);
-		JSONParser parser = new JSONParser();
-		JSONObject root = (JSONObject) parser.parse(fileReader);
+		BoardTemplate boardTemplate = findStandardBoardTemplate();
 		
+		//the non-blocking parser is the one that reads from a buffer in 
+		//place; given all of the input up front, it never has to wait
+		try (JsonParser parser = Json.objectMapper.getFactory()
+				.createNonBlockingByteBufferParser()) {
+			ByteBufferFeeder feeder = 
+					(ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+			feeder.feedInput(buffer.duplicate());
+			feeder.endOfInput();
+			
+			return load(parser, boardTemplate);
+		}
+	}
+	
+	/**
+	 * Loads game state from the file with the given filePath, played on the
+	 * board in the file with the given boardFilePath.
+	 * @param boardFilePath  the path to the file with the board
+	 * @param filePath  the path to the file with the game state
+	 * @throws IOException if something goes wrong reading the file
+	 * @throws ParseException if the file could not be parsed correctly
+	 * @throws SchemaMatchingException if the file does not match its schema
+	 * @return the state of the loaded game
+	 */
+	public static GameState load(String boardFilePath, String filePath) 
+			throws IOException, ParseException, SchemaMatchingException {
+		BoardTemplate boardTemplate = findBoardTemplate(boardFilePath);
+		
+		try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+			return load(in, boardTemplate);
+		}
+	}
+	
+	/**
+	 * Loads every game state file in the directory with the given 
+	 * directoryPath, in parallel on the common fork-join pool.
+	 * @see #loadDirectory(String, String, ForkJoinPool)
+	 */
+	public static BatchLoadResult loadDirectory(String directoryPath) 
+			throws IOException {
+		if (directoryPath == null) {
+			throw new IllegalArgumentException("Directory path was null.");
+		}
+		
+		return loadDirectory(findStandardBoardTemplate(), directoryPath, 
+				ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Loads every game state file, that is every .json file, directly in the
+	 * directory with the given directoryPath, played on the board in the 
+	 * file with the given boardFilePath. Files are loaded in parallel on 
+	 * pool, and a file that fails to load is reported in the result instead
+	 * of stopping the others.
+	 * @param boardFilePath  the path to the file with the board, not null
+	 * @param directoryPath  the path to the directory with the game state 
+	 * files, not null
+	 * @param pool  the pool to load the files on, not null
+	 * @throws IllegalArgumentException if any argument is null
+	 * @throws IOException if the directory can't be listed
+	 * @return the state of every file that loaded and the reason every other
+	 * file did not
+	 */
+	public static BatchLoadResult loadDirectory(String boardFilePath, 
+			String directoryPath, ForkJoinPool pool) throws IOException {
+		if (boardFilePath == null) {
+			throw new IllegalArgumentException("Board file path was null.");
+		}
+		
+		if (directoryPath == null) {
+			throw new IllegalArgumentException("Directory path was null.");
+		}
+		
+		if (pool == null) {
+			throw new IllegalArgumentException("Pool was null.");
+		}
+		
+		return loadDirectory(findBoardTemplate(boardFilePath), directoryPath, 
+				pool);
+	}
+	
+	private static BatchLoadResult loadDirectory(BoardTemplate boardTemplate,
+			String directoryPath, ForkJoinPool pool) throws IOException {
+		List<Path> paths = new ArrayList<>();
+		
+		try (DirectoryStream<Path> directory = Files.newDirectoryStream(
+				Paths.get(directoryPath), "*.json")) {
+			for (Path path : directory) {
+				if (Files.isRegularFile(path)) {
+					paths.add(path);
+				}
+			}
+		}
+		
+		Collections.sort(paths);
+		
+		LoadTask task = new LoadTask(paths, boardTemplate);
+		pool.invoke(task);
+		
+		Map<Path, GameState> pathsToGameStates = new LinkedHashMap<>();
+		List<BatchLoadResult.FileError> errors = new ArrayList<>();
+		
+		for (int i = 0; i < paths.size(); i++) {
+			if (task.gameStates[i] != null) {
+				pathsToGameStates.put(paths.get(i), task.gameStates[i]);
+			}
+			else {
+				errors.add(task.errors[i]);
+			}
+		}
+		
+		return new BatchLoadResult(pathsToGameStates, errors);
+	}
+	
+	//leaves in open
+	private static GameState load(InputStream in, BoardTemplate boardTemplate)
+			throws IOException, ParseException, SchemaMatchingException {
+		try (JsonParser parser = 
+				Json.objectMapper.getFactory().createParser(in)) {
+			parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+			
+			return load(parser, boardTemplate);
+		}
+	}
+	
+	/**
+	 * Loads game state from parser in one streaming pass. The location 
+	 * additions, which grow with the board, are validated and applied one at
+	 * a time as they are read, so they are never held all at once; the rest
+	 * of the file is small and is kept as a tree to validate and build from.
+	 * Values are read with the object mapper rather than through parser, 
+	 * which has no codec if it is non-blocking.
+	 * @throws ParseException if parser's input is not well formed JSON
+	 */
+	private static GameState load(JsonParser parser, 
+			BoardTemplate boardTemplate)
+			throws IOException, ParseException, SchemaMatchingException {
+		List<Location> locations = boardTemplate.newLocations();
+		//every field but the location additions, which stay empty
+		ObjectNode root = Json.objectMapper.createObjectNode();
+		
+		try {
+			JsonToken firstToken = parser.nextToken();
+			
+			if (firstToken == null) {
+				throw new ParseException(0, 
+						ParseException.ERROR_UNEXPECTED_TOKEN, null);
+			}
+			
+			if (firstToken != JsonToken.START_OBJECT) {
+				JsonNode value = Json.objectMapper.readTree(parser);
+				throw new SchemaMatchingException(ValidateJsonFiles
+						.findVariableGameStateViolations(value));
+			}
+			
+			//of every location addition, so a file is reported in full
+			List<String> violations = new ArrayList<>();
+			
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				
+				if (parser.nextToken() == JsonToken.START_ARRAY && 
+						fieldName.equals("locationAdditions")) {
+					root.putArray(fieldName);
+					
+					for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; 
+							i++) {
+						JsonNode locationAddition = 
+								Json.objectMapper.readTree(parser);
+						violations.addAll(ValidateJsonFiles
+								.findLocationAdditionViolations(
+										locationAddition, i));
+						
+						//the locations are of no use once one fails
+						if (violations.isEmpty()) {
+							loadLocationAddition(locationAddition, locations);
+						}
+					}
+				}
+				else {
+					root.set(fieldName, 
+							Json.objectMapper.<JsonNode>readTree(parser));
+				}
+			}
+			
+			violations.addAll(
+					ValidateJsonFiles.findVariableGameStateViolations(root));
+			
+			if (!violations.isEmpty()) {
+				throw new SchemaMatchingException(violations);
+			}
+		} catch (JsonProcessingException e) {
+			throw toParseException(e);
+		}
+		
+		return build(root, locations, boardTemplate.getBoard());
+	}
+	
+	//covers both malformed JSON and JSON cut off before a value it started
+	private static ParseException toParseException(JsonProcessingException e) {
+		JsonLocation location = e.getLocation();
+		//the offset is in chars or in bytes, depending on the input
+		long position = location == null ? 0 : Math.max(0, 
+				Math.max(location.getCharOffset(), location.getByteOffset()));
+		
+		return new ParseException((int) position, 
+				ParseException.ERROR_UNEXPECTED_TOKEN, e.getOriginalMessage());
+	}
+	
+	/**
+	 * @throws ParseException if in is not well formed JSON
+	 */
+	private static JsonNode readTree(InputStream in) 
+			throws IOException, ParseException {
+		try {
+			return Json.objectMapper.readTree(in);
+		} catch (JsonProcessingException e) {
+			throw toParseException(e);
+		}
+	}
+	
+	/**
+	 * Builds the state of a game from the root of its game state file, which
+	 * matches its schema, played on board.
+	 * @param locations  the locations of the game, with the file's location
+	 * additions already applied
+	 */
+	private static GameState build(JsonNode root, List<Location> locations, 
+			BoardGraph board) {
 		GameState.Builder gameStateBuilder = new GameState.Builder();
 		
 		List<AbstractCombatCard> combatCards = findCombatCards(root);
@@ -136,12 +544,12 @@ public final class GameStateLoader {
 			.setThreatLevel(findThreatLevel(root))
 			.setRound(findRound(root));
 
-		List<Long> eventCards1StackIndexes = findCardIndexes(root, "eventCards1Stack");
-		List<Long> eventCards1DiscardIndexes = findCardIndexes(root, "eventCards1Discard");
-		List<Long> eventCards2StackIndexes = findCardIndexes(root, "eventCards2Stack");
-		List<Long> eventCards2DiscardIndexes = findCardIndexes(root, "eventCards2Discard");
-		List<Long> eventCards3StackIndexes = findCardIndexes(root, "eventCards3Stack");
-		List<Long> eventCards3DiscardIndexes = findCardIndexes(root, "eventCards3Discard"); 
+		List<Integer> eventCards1StackIndexes = findCardIndexes(root, "eventCards1Stack");
+		List<Integer> eventCards1DiscardIndexes = findCardIndexes(root, "eventCards1Discard");
+		List<Integer> eventCards2StackIndexes = findCardIndexes(root, "eventCards2Stack");
+		List<Integer> eventCards2DiscardIndexes = findCardIndexes(root, "eventCards2Discard");
+		List<Integer> eventCards3StackIndexes = findCardIndexes(root, "eventCards3Stack");
+		List<Integer> eventCards3DiscardIndexes = findCardIndexes(root, "eventCards3Discard"); 
 
 		List<AbstractEventCard> eventCards1 = findCards(root, "eventCards1");
 		List<AbstractEventCard> eventCards2 = findCards(root, "eventCards2");
@@ -167,8 +575,8 @@ public final class GameStateLoader {
 			.setEventCards3Stack(new LinkedList<>(eventCards3StackList))
 			.setEventCards3Discard(new LinkedList<>(eventCards3DiscardList));
 
-		List<Long> threatCardsStackIndexes = findCardIndexes(root, "threatCardsStack");
-		List<Long> threatCardsDiscardIndexes = findCardIndexes(root, "threatCardsDiscard");
+		List<Integer> threatCardsStackIndexes = findCardIndexes(root, "threatCardsStack");
+		List<Integer> threatCardsDiscardIndexes = findCardIndexes(root, "threatCardsDiscard");
 		
 		List<AbstractThreatCard> threatCards = findCards(root, "threatCards");
 
@@ -183,110 +591,134 @@ public final class GameStateLoader {
 		gameStateBuilder.setHasCombatBonusBeenUsed(findHasCombatBonusBeenUsed(root))
 			.setHasSightPowerBeenUsed(findHasSightPowerBeenUsed(root));
 		
-		gameStateBuilder.setLocations(findLocations(root))
-			.setUnitStringsToUnits(unitStringsToUnits);
+		gameStateBuilder.setLocations(locations)
+			.setBoard(board)
+			.setUnitStringsToUnits(unitStringsToUnits)
+			.setTokenStringsToTokens(tokenStringsToTokens);
 
 		return gameStateBuilder.build();
 	}
 	
-	private static List<Location> findLocations(JSONObject variableRoot) {
-		assert ValidateJsonFiles.validateConstantGameState(BOARD_PATH) :
-			"Board failed to validate against its schema.";
+	/**
+	 * @return the URL of the classpath resource with the given resourceName
+	 * or, if there is none, of the file with resourceName as its path
+	 * @throws FileNotFoundException if there is neither
+	 */
+	static URL findResource(String resourceName) throws IOException {
+		assert resourceName != null;
+		
+		URL result = GameStateLoader.class.getClassLoader()
+				.getResource(resourceName);
+		
+		if (result == null) {
+			Path path = Paths.get(resourceName);
+			
+			if (!Files.isRegularFile(path)) {
+				throw new FileNotFoundException("No such resource: " + 
+						resourceName);
+			}
+			
+			result = path.toAbsolutePath().normalize().toUri().toURL();
+		}
 		
-		FileReader fileReader;
+		return result;
+	}
+	
+	private static BoardTemplate findStandardBoardTemplate() {
+		try {
+			return findBoardTemplate(findResource(BOARD_RESOURCE));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+	
+	private static BoardTemplate findBoardTemplate(String boardFilePath) {
 		try {
-			fileReader = new FileReader(BOARD_PATH);
-		} catch (FileNotFoundException e) {
+			return findBoardTemplate(Paths.get(boardFilePath).toAbsolutePath()
+					.normalize().toUri().toURL());
+		} catch (MalformedURLException e) {
 			throw new AssertionError(e);
 		}
+	}
+	
+	//parses the board only the first time it is loaded
+	private static BoardTemplate findBoardTemplate(URL boardUrl) {
+		//URL.equals may resolve host names, so the cache is keyed by string
+		String key = boardUrl.toString();
+		BoardTemplate result = boardTemplates.get(key);
 		
-		JSONParser parser = new JSONParser();
+		if (result == null) {
+			result = parseBoard(boardUrl);
+			BoardTemplate previous = boardTemplates.putIfAbsent(key, result);
+			
+			if (previous != null) {
+				result = previous;
+			}
+		}
 		
-		JSONObject constantRoot;
-		try {
-			constantRoot = (JSONObject) parser.parse(fileReader);
+		return result;
+	}
+	
+	private static BoardTemplate parseBoard(URL boardUrl) {
+		JsonNode constantRoot;
+		try (InputStream in = boardUrl.openStream()) {
+			constantRoot = readTree(in);
 		} catch (IOException | ParseException e) {
 			throw new AssertionError(e);
 		}
 		
-		List<Location> resultLocations = new ArrayList<Location>();
-		Set<Location> locationsSet = new HashSet<Location>();
+		assert ValidateJsonFiles.findConstantGameStateViolations(constantRoot)
+				.isEmpty() : "Board failed to validate against its schema.";
 		
-		JSONArray locationsArray = (JSONArray) constantRoot.get("locations");
+		return BoardTemplate.parse(constantRoot);
+	}
+	
+	/**
+	 * Parses and validates the board in the file at boardPath. Unlike the 
+	 * boards of the other loads, the result is not cached, so a file that 
+	 * has changed is read again.
+	 * @throws IOException if something goes wrong reading the file
+	 * @throws ParseException if the file could not be parsed correctly
+	 * @throws SchemaMatchingException if the file does not match its schema
+	 */
+	static BoardTemplate loadBoardTemplate(Path boardPath) 
+			throws IOException, ParseException, SchemaMatchingException {
+		assert boardPath != null;
 		
-		for (Object locationsArrayElement : locationsArray) {
-			JSONObject locationObject = (JSONObject) locationsArrayElement;
-			String name = (String) locationObject.get("name");
-			String terrainString = (String) locationObject.get("terrain");
-			Terrain terrain = Terrain.valueOf(terrainString);
-			Base base = null;
-			
-			JSONObject baseObject = (JSONObject) locationObject.get("base");
-			
-			if (baseObject != null) {
-				int baseSize = ((Long) baseObject.get("size")).intValue();
-				base = new Base(baseSize);	
-			}
-			
-			int supply = 0;
-			
-			Long supplyLong = (Long) locationObject.get("supply");
-			
-			if (supplyLong != null) {
-				supply = supplyLong.intValue();
-			}
-
-			int invest = 0;
-			
-			Long investLong = (Long) locationObject.get("invest");
-			
-			if (investLong != null) {
-				invest = investLong.intValue();
-			}
-			
-			Location location = 
-					new Location(name, terrain, base, supply, invest);
-			boolean isLocationDuplicate = !locationsSet.add(location);
-			
-			assert !isLocationDuplicate : "Duplicate location encountered."
-					+ "Name: " + location.getName();
-			
-			resultLocations.add(location);
+		JsonNode constantRoot;
+		
+		try (InputStream in = Files.newInputStream(boardPath)) {
+			constantRoot = readTree(in);
 		}
-
-		loadLocationAdditions(variableRoot, resultLocations);
 		
-		JSONArray adjacenciesArray = 
-				(JSONArray) constantRoot.get("adjacencies");
+		List<String> violations = 
+				ValidateJsonFiles.findConstantGameStateViolations(constantRoot);
 		
-		for (Object adjacenciesArrayElement : adjacenciesArray) {
-			JSONArray adjacencyPair = (JSONArray) adjacenciesArrayElement;
-
-			int locationIndexA = ((Long) adjacencyPair.get(0)).intValue();
-			int locationIndexB = ((Long) adjacencyPair.get(1)).intValue();
-
-			assert locationIndexA >= 0 && 
-					locationIndexA < resultLocations.size() : 
-						"Location index out of bounds: " + locationIndexA;
-
-			assert locationIndexB >= 0 && 
-					locationIndexB < resultLocations.size() : 
-						"Location index out of bounds: " + locationIndexB;
-			
-			assert locationIndexA != locationIndexB : "Location cannot be "
-					+ "adjacent to itself: " + locationIndexA;
-
-			Location locationA = resultLocations.get(locationIndexA);
-			Location locationB = resultLocations.get(locationIndexB);
-
-			locationA.addAdjacentLocation(locationB);
-			locationB.addAdjacentLocation(locationA);
+		if (!violations.isEmpty()) {
+			throw new SchemaMatchingException(violations);
 		}
 		
-		return resultLocations;
+		return BoardTemplate.parse(constantRoot);
 	}
 	
-	private static Map<Faction, Player> findFactionsToPlayers(JSONObject root, 
+	/**
+	 * Loads game state from the file at path, played on the board of 
+	 * boardTemplate.
+	 * @throws IOException if something goes wrong reading the file
+	 * @throws ParseException if the file could not be parsed correctly
+	 * @throws SchemaMatchingException if the file does not match its schema
+	 */
+	static GameState load(Path path, BoardTemplate boardTemplate) 
+			throws IOException, ParseException, SchemaMatchingException {
+		assert path != null;
+		assert boardTemplate != null;
+		
+		try (InputStream in = Files.newInputStream(path)) {
+			return load(in, boardTemplate);
+		}
+	}
+	
+	private static Map<Faction, Player> findFactionsToPlayers(JsonNode root, 
 			List<AbstractCombatCard> combatCards) {
 		Map<Faction, Player> result = new HashMap<>();
 		
@@ -297,26 +729,24 @@ public final class GameStateLoader {
 		return result;
 	}
 
-	@SuppressWarnings("unchecked")
-	private static Player createPlayer(JSONObject root, 
+	private static Player createPlayer(JsonNode root, 
 			List<AbstractCombatCard> combatCards, Faction faction) {
 		assert(faction != null);
 		
 		String factionKey = faction.toString();
 		
-		JSONObject playersConf = 
-				(JSONObject) root.get("factionsToPlayers");
-		JSONObject playerConf = (JSONObject) playersConf.get(factionKey);
+		JsonNode playersConf = root.get("factionsToPlayers");
+		JsonNode playerConf = playersConf.get(factionKey);
 		
-		List<Long> combatCardsInHandIndexes = 
-				(List<Long>) playerConf.get("combatCardsInHand");
+		List<Integer> combatCardsInHandIndexes = 
+				toIntegers(playerConf.get("combatCardsInHand"));
 
-		List<Long> combatCardsDiscardIndexes = 
-				(List<Long>) playerConf.get("combatCardsDiscard");
+		JsonNode combatCardsDiscardIndexes = 
+				playerConf.get("combatCardsDiscard");
 		
-		JSONArray unitsConf = (JSONArray) playerConf.get("units");
-		int cashInHand = ((Long) playerConf.get("cashInHand")).intValue();
-		int cashPool = ((Long) playerConf.get("cashPool")).intValue();
+		JsonNode unitsConf = playerConf.get("units");
+		int cashInHand = playerConf.get("cashInHand").intValue();
+		int cashPool = playerConf.get("cashPool").intValue();
 		
 		List<AbstractCombatCard> combatCardsInHandList = 
 				buildSublist(combatCardsInHandIndexes, combatCards);
@@ -326,53 +756,45 @@ public final class GameStateLoader {
 		Set<AbstractCombatCard> combatCardsDiscard = new HashSet<>();
 		
 		if (combatCardsDiscardIndexes != null) {
-			List<AbstractCombatCard> combatCardsDiscardList = 
-					buildSublist(combatCardsDiscardIndexes, combatCards);
+			List<AbstractCombatCard> combatCardsDiscardList = buildSublist(
+					toIntegers(combatCardsDiscardIndexes), combatCards);
 			combatCardsDiscard.addAll(combatCardsDiscardList);
 		}
 		
 		
-		Set<AbstractUnit> units = new HashSet<>(unitsConf);
-		
-
+		Collection<AbstractUnit> units = getUnits(unitsConf);
 		
 		return new Player(combatCardsInHand, combatCardsDiscard, units, 
 				cashInHand, cashPool);
 	}
 	
-	@SuppressWarnings("unchecked")
-	private static List<Faction> findTurnOrder(JSONObject root) {
-		return (List<Faction>) root.get("turnOrder");
+	private static List<Faction> findTurnOrder(JsonNode root) {
+		return findFactions(root, "turnOrder");
 	}
 	
-	@SuppressWarnings("unchecked")
-	private static List<Faction> findTieBreakingOrder(JSONObject root) {
-		return (List<Faction>) root.get("tieBreakingOrder");
+	private static List<Faction> findTieBreakingOrder(JsonNode root) {
+		return findFactions(root, "tieBreakingOrder");
 	}
 	
-	@SuppressWarnings("unchecked")
-	private static List<Faction> findSpecialTokenOrder(JSONObject root) {
-		return (List<Faction>) root.get("specialTokenOrder");
+	private static List<Faction> findSpecialTokenOrder(JsonNode root) {
+		return findFactions(root, "specialTokenOrder");
 	}
 	
-	@SuppressWarnings("unchecked")
-	private static List<Integer> findSpecialTokensPerPosition(JSONObject root) {
-		return (List<Integer>) root.get("specialTokensPerPosition");
+	private static List<Integer> findSpecialTokensPerPosition(JsonNode root) {
+		return toIntegers(root.get("specialTokensPerPosition"));
 	}       
 	        
-	@SuppressWarnings("unchecked")
-	private static Map<Faction, Integer> findFactionsToSupplyPositions(JSONObject root) {
-		return (Map<Faction, Integer>) root.get("factionsToSupplyPositions"); 
+	private static Map<Faction, Integer> findFactionsToSupplyPositions(JsonNode root) {
+		return findFactionsToIntegers(root, "factionsToSupplyPositions"); 
 	}  
 	
-	private static List<List<Integer>> findSupplyLimits(JSONObject root) {
-		JSONArray limitsListObject = (JSONArray) root.get("supplyLimits");
+	private static List<List<Integer>> findSupplyLimits(JsonNode root) {
+		JsonNode limitsListObject = root.get("supplyLimits");
 		
 		List<List<Integer>> limitsList = new ArrayList<List<Integer>>();
 		
-		for (Object limitsElement : limitsListObject) {
-			@SuppressWarnings("unchecked")
-			List<Integer> limits = (List<Integer>) limitsElement;
+		for (JsonNode limitsElement : limitsListObject) {
+			List<Integer> limits = toIntegers(limitsElement);
 			Collections.sort(limits, Collections.reverseOrder());
 			limitsList.add(limits);
 		}
@@ -380,64 +802,90 @@ public final class GameStateLoader {
 		return limitsList;
 	}
 	        
-	@SuppressWarnings("unchecked")
-	private static Map<Faction, Integer> findFactionsToNumBases(JSONObject root) {
-		return (Map<Faction, Integer>) root.get("factionsToNumBases");
+	private static Map<Faction, Integer> findFactionsToNumBases(JsonNode root) {
+		return findFactionsToIntegers(root, "factionsToNumBases");
 	}       
+	
+	private static List<Faction> findFactions(JsonNode root, String key) {
+		List<Faction> result = new ArrayList<>();
+		
+		for (JsonNode factionString : root.get(key)) {
+			result.add(Faction.valueOf(factionString.textValue()));
+		}
+		
+		return result;
+	}
+	
+	private static Map<Faction, Integer> findFactionsToIntegers(JsonNode root, 
+			String key) {
+		JsonNode factionsObject = root.get(key);
+		Map<Faction, Integer> result = new EnumMap<>(Faction.class);
+		Iterator<Map.Entry<String, JsonNode>> fields = factionsObject.fields();
+		
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			Faction faction = Faction.valueOf(field.getKey());
+			result.put(faction, field.getValue().intValue());
+		}
+		
+		return result;
+	}
+	
+	private static List<Integer> toIntegers(JsonNode numbers) {
+		List<Integer> result = new ArrayList<>(numbers.size());
+		
+		for (JsonNode number : numbers) {
+			result.add(number.intValue());
+		}
+		
+		return result;
+	}
 	        
-	private static int findThreatLevel(JSONObject root) {
-		return ((Long) root.get("threatLevel")).intValue();
+	private static int findThreatLevel(JsonNode root) {
+		return root.get("threatLevel").intValue();
 	}       
 	        
-	private static int findRound(JSONObject root) {
-		return ((Long) root.get("round")).intValue();
+	private static int findRound(JsonNode root) {
+		return root.get("round").intValue();
 	}       
 	        
-	private static void loadLocationAdditions(JSONObject root, 
+	private static void loadLocationAddition(JsonNode locationAddition, 
 			List<Location> locations) {
-		JSONArray locationAdditionsArray = (JSONArray) root.get("locationAdditions");
-		
-		for (Object locationAdditionsElement : locationAdditionsArray) {
-			JSONObject locationAddition = (JSONObject) locationAdditionsElement;
-			JSONObject baseObject = (JSONObject) locationAddition.get("base");
-			String ownerString = (String) locationAddition.get("owner");
-			JSONArray unitsArray = (JSONArray) locationAddition.get("units");
-			int targetLocationIndex = ((Long) locationAddition.get("targetLocation")).intValue();
-			
-			Location location = locations.get(targetLocationIndex);
-			
-			Base base = null;
-			
-			if (baseObject != null) {
-				int baseDefense = ((Long) baseObject.get("defense")).intValue();
-				boolean isDefenseActive = 
-						(Boolean) baseObject.get("isDefenseActive");
-				base = new Base(location.getBaseStrength(), baseDefense, 
-						isDefenseActive);	
-			}
-			
-			Faction owner = null;
-			
-			if (ownerString != null) {
-				owner = Faction.valueOf(ownerString);
-			}
-			 
-			Collection<AbstractUnit> units = getUnits(unitsArray); 
-			
-			Location modifiedLocation = 
-					new Location(location, base, new HashSet<>(), units, owner);
-			
-			locations.set(targetLocationIndex, modifiedLocation);
+		JsonNode baseObject = locationAddition.get("base");
+		JsonNode ownerString = locationAddition.get("owner");
+		JsonNode unitsArray = locationAddition.get("units");
+		int targetLocationIndex = locationAddition.get("targetLocation").intValue();
+		
+		Location location = locations.get(targetLocationIndex);
+		
+		Base base = null;
+		
+		if (baseObject != null) {
+			int baseDefense = baseObject.get("defense").intValue();
+			boolean isDefenseActive = 
+					baseObject.get("isDefenseActive").booleanValue();
+			base = new Base(location.getBaseStrength(), baseDefense, 
+					isDefenseActive);	
 		}
+		
+		Faction owner = null;
+		
+		if (ownerString != null && !ownerString.isNull()) {
+			owner = Faction.valueOf(ownerString.textValue());
+		}
+		 
+		Collection<AbstractUnit> units = getUnits(unitsArray); 
+		
+		Location modifiedLocation = 
+				new Location(location, base, units, owner);
+		
+		locations.set(targetLocationIndex, modifiedLocation);
 	}       
             
-	private static <T> List<T> buildSublist(List<Long> indexes, List<T> items) {
+	private static <T> List<T> buildSublist(List<Integer> indexes, List<T> items) {
 		List<T> result = new ArrayList<>();
 		
-		for (Long i : indexes) {
-			int index = i.intValue();
-			
-			
+		for (int index : indexes) {
 			if (index >= items.size()) {
 				throw new RuntimeException("Index outside bounds: " + index);
 			}
@@ -448,21 +896,19 @@ public final class GameStateLoader {
 		return result;
 	}
 	
-	private static List<AbstractCombatCard> findCombatCards(JSONObject root) {
+	private static List<AbstractCombatCard> findCombatCards(JsonNode root) {
 		List<AbstractCombatCard> result = new ArrayList<>();
 		
-		JSONArray combatCardArray = (JSONArray) root.get("combatCards");
+		JsonNode combatCardArray = root.get("combatCards");
 		
-		for (Object combatCardArrayElement : combatCardArray) {
-			JSONObject combatCardObject = (JSONObject) combatCardArrayElement;
-			String name = (String) combatCardObject.get("name");
-			Integer strength = 
-					((Long) combatCardObject.get("strength")).intValue();
+		for (JsonNode combatCardObject : combatCardArray) {
+			String name = combatCardObject.get("name").textValue();
+			Integer strength = combatCardObject.get("strength").intValue();
 			Integer killingPotential = 
-				((Long) combatCardObject.get("killingPotential")).intValue();
+				combatCardObject.get("killingPotential").intValue();
 			Integer deathDefense = 
-					((Long) combatCardObject.get("deathDefense")).intValue();
-			AbstractCombatCard card = new AbstractCombatCard(name, strength, 
+					combatCardObject.get("deathDefense").intValue();
+			AbstractCombatCard card = new StandardCombatCard(name, strength, 
 					killingPotential, deathDefense);
 			result.add(card);
 		}
@@ -470,30 +916,80 @@ public final class GameStateLoader {
 		return result;
 	}
 	
-	private static boolean findHasCombatBonusBeenUsed(JSONObject root) {
-		return (Boolean) root.get("hasCombatBonusBeenUsed");
+	private static boolean findHasCombatBonusBeenUsed(JsonNode root) {
+		return root.get("hasCombatBonusBeenUsed").booleanValue();
 	}
 	
-	private static boolean findHasSightPowerBeenUsed(JSONObject root) {
-		return (Boolean) root.get("hasSightPowerBeenUsed");
+	private static boolean findHasSightPowerBeenUsed(JsonNode root) {
+		return root.get("hasSightPowerBeenUsed").booleanValue();
 	}
 	
+	private static List<Integer> findCardIndexes(JsonNode root, String key) {
+		return toIntegers(root.get(key));
+	}
+	
+	//cards are kept as json-simple objects, as they were parsed before the 
+	//loader moved to Jackson
 	@SuppressWarnings("unchecked")
-	private static List<Long> findCardIndexes(JSONObject root, String key) {
-		return (List<Long>) root.get(key);
+	private static <T> List<T> findCards(JsonNode root, String key) {
+		List<T> result = new ArrayList<>();
+		
+		for (JsonNode card : root.get(key)) {
+			result.add((T) toJsonSimple(card));
+		}
+		
+		return result;
 	}
 	
+	/**
+	 * @return node as json-simple would have parsed it: objects as 
+	 * JSONObjects, arrays as JSONArrays, integers as Longs and other numbers
+	 * as Doubles
+	 */
 	@SuppressWarnings("unchecked")
-	private static <T> List<T> findCards(JSONObject root, String key) {
-		return (List<T>) root.get(key);
+	private static Object toJsonSimple(JsonNode node) {
+		if (node.isObject()) {
+			JSONObject result = new JSONObject();
+			Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+			
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				result.put(field.getKey(), toJsonSimple(field.getValue()));
+			}
+			
+			return result;
+		}
+		else if (node.isArray()) {
+			JSONArray result = new JSONArray();
+			
+			for (JsonNode element : node) {
+				result.add(toJsonSimple(element));
+			}
+			
+			return result;
+		}
+		else if (node.isIntegralNumber()) {
+			return node.longValue();
+		}
+		else if (node.isNumber()) {
+			return node.doubleValue();
+		}
+		else if (node.isTextual()) {
+			return node.textValue();
+		}
+		else if (node.isBoolean()) {
+			return node.booleanValue();
+		}
+		
+		return null;
 	}
 	
-	private static Collection<AbstractUnit> getUnits(JSONArray units) {
+	private static Collection<AbstractUnit> getUnits(JsonNode units) {
 		Collection<AbstractUnit> result = new ArrayList<AbstractUnit>();
 		
 		if (units != null) {
-			for (Object element : units) {
-				UnitString unitString = UnitString.valueOf((String) element);
+			for (JsonNode element : units) {
+				UnitString unitString = UnitString.valueOf(element.textValue());
 				AbstractUnit unit = unitStringsToUnits.get(unitString);
 				result.add(unit);
 			}	
@@ -501,4 +997,96 @@ public final class GameStateLoader {
 		
 		return result;
 	}
+	
+	/**
+	 * Loads a range of the files of a batch, splitting it in halves on the
+	 * pool until each subtask loads one file. Files take milliseconds each,
+	 * so one file is plenty of work for a task.
+	 *
+	 */
+	private static final class LoadTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final List<Path> paths;
+		private final BoardTemplate boardTemplate;
+		//indexed like paths; for each file, exactly one is non-null once done
+		private final GameState[] gameStates;
+		private final BatchLoadResult.FileError[] errors;
+		private final int start;
+		private final int end;
+		
+		LoadTask(List<Path> paths, BoardTemplate boardTemplate) {
+			this(paths, boardTemplate, new GameState[paths.size()], 
+					new BatchLoadResult.FileError[paths.size()], 0, 
+					paths.size());
+		}
+		
+		private LoadTask(List<Path> paths, BoardTemplate boardTemplate, 
+				GameState[] gameStates, BatchLoadResult.FileError[] errors, 
+				int start, int end) {
+			this.paths = paths;
+			this.boardTemplate = boardTemplate;
+			this.gameStates = gameStates;
+			this.errors = errors;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			if (end - start <= 1) {
+				for (int i = start; i < end; i++) {
+					load(i);
+				}
+				
+				return;
+			}
+			
+			int middle = (start + end) >>> 1;
+			invokeAll(new LoadTask(paths, boardTemplate, gameStates, errors, 
+					start, middle), new LoadTask(paths, boardTemplate, 
+							gameStates, errors, middle, end));
+		}
+		
+		private void load(int index) {
+			Path path = paths.get(index);
+			
+			try {
+				gameStates[index] = GameStateLoader.load(path, boardTemplate);
+			} catch (IOException | ParseException | SchemaMatchingException | 
+					RuntimeException | AssertionError e) {
+				//an AssertionError is a bug hit by this file, which the 
+				//other files need not share; errors of the virtual machine,
+				//such as running out of memory, stop the batch
+				errors[index] = new BatchLoadResult.FileError(path, e);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Holds the object mapper, thread safe once configured, so shared by 
+	 * every load. It is created the first time JSON is read, so that games 
+	 * created from the scenario pack never load Jackson.
+	 *
+	 */
+	private static final class Json {
+		static final ObjectMapper objectMapper = new ObjectMapper();
+	}
+	/**
+	 * Holds the scenario pack shipped with the game, read the first time a 
+	 * game type is loaded.
+	 *
+	 */
+	private static final class ShippedScenarioPack {
+		static final ScenarioPack pack;
+		
+		static {
+			try {
+				pack = ScenarioPack.readResource();
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+		}
+	}
 }
@@ -0,0 +1,201 @@
+package com.boardgame.game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable version of a game state, as returned by GameState.snapshot.
+ * Versions share every location record, player record and card list that
+ * did not change between them, so keeping old versions costs only what
+ * changed.
+ *
+ */
+final class GameStateVersion {
+	private final long version;
+	private final PersistentArray<LocationRecord> locations;
+	//indexed by faction ordinal, null for factions not in the game
+	private final PersistentArray<PlayerRecord> players;
+	
+	private final List<Faction> turnOrder;
+	private final List<Faction> tieBreakingOrder;
+	private final List<Faction> specialTokenOrder;
+	private final int threatLevel;
+	private final int round;
+	private final List<AbstractEventCard> eventCards1Stack;
+	private final List<AbstractEventCard> eventCards1Discard;
+	private final List<AbstractEventCard> eventCards2Stack;
+	private final List<AbstractEventCard> eventCards2Discard;
+	private final List<AbstractEventCard> eventCards3Stack;
+	private final List<AbstractEventCard> eventCards3Discard;
+	private final List<AbstractThreatCard> threatCardsStack;
+	private final List<AbstractThreatCard> threatCardsDiscard;
+	private final boolean hasCombatBonusBeenUsed;
+	private final boolean hasSightPowerBeenUsed;
+	
+	/**
+	 * Creates the version of gameState numbered version, sharing the lists
+	 * of previous that have not changed.
+	 * @param previous  the last version taken, may be null
+	 */
+	GameStateVersion(long version, PersistentArray<LocationRecord> locations,
+			PersistentArray<PlayerRecord> players, GameState gameState,
+			GameStateVersion previous) {
+		assert locations != null;
+		assert players != null;
+		assert gameState != null;
+		
+		boolean hasPrevious = previous != null;
+		
+		this.version = version;
+		this.locations = locations;
+		this.players = players;
+		this.turnOrder = share(hasPrevious ? previous.turnOrder : null,
+				gameState.getTurnOrder());
+		this.tieBreakingOrder = share(hasPrevious ?
+				previous.tieBreakingOrder : null, gameState.getTieBreakingOrder());
+		this.specialTokenOrder = share(hasPrevious ?
+				previous.specialTokenOrder : null,
+				gameState.getSpecialTokenOrder());
+		this.threatLevel = gameState.getThreatLevel();
+		this.round = gameState.getRound();
+		this.eventCards1Stack = share(hasPrevious ?
+				previous.eventCards1Stack : null, gameState.getEventCards1Stack());
+		this.eventCards1Discard = share(hasPrevious ?
+				previous.eventCards1Discard : null,
+				gameState.getEventCards1Discard());
+		this.eventCards2Stack = share(hasPrevious ?
+				previous.eventCards2Stack : null, gameState.getEventCards2Stack());
+		this.eventCards2Discard = share(hasPrevious ?
+				previous.eventCards2Discard : null,
+				gameState.getEventCards2Discard());
+		this.eventCards3Stack = share(hasPrevious ?
+				previous.eventCards3Stack : null, gameState.getEventCards3Stack());
+		this.eventCards3Discard = share(hasPrevious ?
+				previous.eventCards3Discard : null,
+				gameState.getEventCards3Discard());
+		this.threatCardsStack = share(hasPrevious ?
+				previous.threatCardsStack : null, gameState.getThreatCardsStack());
+		this.threatCardsDiscard = share(hasPrevious ?
+				previous.threatCardsDiscard : null,
+				gameState.getThreatCardsDiscard());
+		this.hasCombatBonusBeenUsed = gameState.getHasCombatBonusBeenUsed();
+		this.hasSightPowerBeenUsed = gameState.getHasSightPowerBeenUsed();
+	}
+	
+	/**
+	 * @return previous if it holds the same elements as current, in order,
+	 * otherwise an unmodifiable copy of current
+	 */
+	private static <T> List<T> share(List<T> previous,
+			Collection<? extends T> current) {
+		if (previous != null && previous.size() == current.size()) {
+			Iterator<? extends T> iterator = current.iterator();
+			boolean isSame = true;
+			
+			for (T element : previous) {
+				if (element != iterator.next()) {
+					isSame = false;
+					break;
+				}
+			}
+			
+			if (isSame) {
+				return previous;
+			}
+		}
+		
+		return Collections.unmodifiableList(new ArrayList<T>(current));
+	}
+	
+	/**
+	 * @return the number of this version; later versions of a game have
+	 * larger numbers
+	 */
+	long getVersion() {
+		return version;
+	}
+	
+	int getNumLocations() {
+		return locations.size();
+	}
+	
+	LocationRecord getLocation(int index) {
+		return locations.get(index);
+	}
+	
+	PersistentArray<LocationRecord> getLocations() {
+		return locations;
+	}
+	
+	/**
+	 * @return the record of faction's player, null if faction is not in the
+	 * game
+	 */
+	PlayerRecord getPlayer(Faction faction) {
+		assert faction != null;
+		return players.get(faction.ordinal());
+	}
+	
+	List<Faction> getTurnOrder() {
+		return turnOrder;
+	}
+	
+	List<Faction> getTieBreakingOrder() {
+		return tieBreakingOrder;
+	}
+	
+	List<Faction> getSpecialTokenOrder() {
+		return specialTokenOrder;
+	}
+	
+	int getThreatLevel() {
+		return threatLevel;
+	}
+	
+	int getRound() {
+		return round;
+	}
+	
+	List<AbstractEventCard> getEventCards1Stack() {
+		return eventCards1Stack;
+	}
+	
+	List<AbstractEventCard> getEventCards1Discard() {
+		return eventCards1Discard;
+	}
+	
+	List<AbstractEventCard> getEventCards2Stack() {
+		return eventCards2Stack;
+	}
+	
+	List<AbstractEventCard> getEventCards2Discard() {
+		return eventCards2Discard;
+	}
+	
+	List<AbstractEventCard> getEventCards3Stack() {
+		return eventCards3Stack;
+	}
+	
+	List<AbstractEventCard> getEventCards3Discard() {
+		return eventCards3Discard;
+	}
+	
+	List<AbstractThreatCard> getThreatCardsStack() {
+		return threatCardsStack;
+	}
+	
+	List<AbstractThreatCard> getThreatCardsDiscard() {
+		return threatCardsDiscard;
+	}
+	
+	boolean getHasCombatBonusBeenUsed() {
+		return hasCombatBonusBeenUsed;
+	}
+	
+	boolean getHasSightPowerBeenUsed() {
+		return hasSightPowerBeenUsed;
+	}
+}
@@ -0,0 +1,309 @@
+package com.boardgame.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.parser.ParseException;
+
+import com.boardgame.game.GameStateLoader.GameType;
+
+/**
+ * The definitions of the game types, kept up to date with their files, so
+ * that games created after a board or scenario file changes use the new
+ * file without a restart.
+ *
+ * A background thread watches the directory of the files. When a scenario
+ * file changes, only it is validated and compiled again; when the board
+ * file changes, the board and every scenario on it are. A file that fails
+ * to load leaves the definitions as they were, and is reported by getErrors
+ * until it loads. A board that loads while a scenario fails on it is
+ * reported as not applied, and is tried again on every change to a
+ * scenario until it is. New definitions are swapped in all at once, so a game is
+ * never created from a mix of old and new files, and games already created
+ * have their own state, so they are not affected.
+ *
+ * Schemas are not watched, as they change with the code that reads them.
+ * Only games created by newGameState see the changes;
+ * GameStateLoader.load(GameType) goes on using the shipped definitions.
+ *
+ */
+public final class GameTypeRegistry implements Closeable {
+	//how long the directory has to be quiet before its changes are loaded,
+	//so that a file written in several steps is read once it is complete
+	private static final long QUIET_MILLIS = 100;
+	
+	private final Path directory;
+	private final Path boardPath;
+	private final Map<Path, GameType> scenarioPathsToGameTypes;
+	private final WatchService watchService;
+	private final Thread watcher;
+	
+	//replaced, never modified, and only by the watcher once constructed
+	private volatile Definitions definitions;
+	//whether the board file has changed since definitions was swapped in;
+	//only used by the watcher once constructed
+	private boolean isBoardPending;
+	//the latest failure of each file that has not loaded since
+	private final Map<Path, BatchLoadResult.FileError> pathsToErrors =
+			new ConcurrentHashMap<>();
+	
+	private GameTypeRegistry(Path directory) throws IOException {
+		this.directory = directory;
+		boardPath = directory.resolve(
+				Paths.get(GameStateLoader.BOARD_RESOURCE).getFileName());
+		
+		Map<Path, GameType> scenarios = new HashMap<>();
+		
+		for (GameType gameType : GameType.values()) {
+			scenarios.put(directory.resolve(Paths.get(
+					GameStateLoader.getResourceName(gameType)).getFileName()),
+					gameType);
+		}
+		
+		scenarioPathsToGameTypes = Collections.unmodifiableMap(scenarios);
+		
+		//watched before the first load, so no change is missed
+		watchService = directory.getFileSystem().newWatchService();
+		directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		
+		reloadBoard();
+		
+		if (definitions == null) {
+			watchService.close();
+			BatchLoadResult.FileError error = getErrors().get(0);
+			throw new IOException("Game types failed to load: " + 
+					getErrors(), error.getCause());
+		}
+		
+		watcher = new Thread(this::watch, "GameTypeRegistry " + directory);
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+	
+	/**
+	 * Loads every game type from its files in the directory with the given
+	 * directoryPath, and starts watching them for changes. The directory
+	 * holds the files the game ships with under their own names, such as
+	 * board.json.
+	 * @param directoryPath  the path to the directory, not null
+	 * @throws IllegalArgumentException if directoryPath is null
+	 * @throws IOException if the directory can't be watched, or if a file
+	 * fails to load, in which case the cause is why
+	 * @return the registry, to be closed once no longer needed
+	 */
+	public static GameTypeRegistry open(String directoryPath)
+			throws IOException {
+		if (directoryPath == null) {
+			throw new IllegalArgumentException("Directory path was null.");
+		}
+		
+		return new GameTypeRegistry(
+				Paths.get(directoryPath).toAbsolutePath().normalize());
+	}
+	
+	/**
+	 * Creates the state of a new game of the given game type, from the
+	 * latest files of the game type that loaded.
+	 * @param gameType  the type of the game, not null
+	 * @throws IllegalArgumentException if gameType is null
+	 * @return the state of the new game
+	 */
+	public GameState newGameState(GameType gameType) {
+		if (gameType == null) {
+			throw new IllegalArgumentException("Game type was null.");
+		}
+		
+		try {
+			return GameStateCodec.decode(
+					definitions.gameTypesToEncodedStates.get(gameType));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+	
+	/**
+	 * @return the latest failure of each file that has failed to load since
+	 * it last loaded, in path order
+	 */
+	public List<BatchLoadResult.FileError> getErrors() {
+		return new ArrayList<>(new TreeMap<>(pathsToErrors).values());
+	}
+	
+	/**
+	 * Stops watching the files, waiting for a reload in progress to finish.
+	 * Games can still be created from the latest definitions.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		
+		try {
+			watcher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				Set<Path> changedPaths = new HashSet<>();
+				boolean isOverflow = false;
+				
+				while (key != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == 
+								StandardWatchEventKinds.OVERFLOW) {
+							isOverflow = true;
+						}
+						else {
+							changedPaths.add(directory.resolve(
+									(Path) event.context()));
+						}
+					}
+					
+					key.reset();
+					key = watchService.poll(QUIET_MILLIS, 
+							TimeUnit.MILLISECONDS);
+				}
+				
+				boolean isScenarioChanged = false;
+				
+				for (Path path : changedPaths) {
+					isScenarioChanged |= 
+							scenarioPathsToGameTypes.containsKey(path);
+				}
+				
+				//after an overflow, which files changed is unknown; a scenario
+				//is loaded on the board on disk until that board is applied
+				if (isOverflow || changedPaths.contains(boardPath) ||
+						(isBoardPending && isScenarioChanged)) {
+					reloadBoard();
+					continue;
+				}
+				
+				for (Path path : changedPaths) {
+					GameType gameType = scenarioPathsToGameTypes.get(path);
+					
+					if (gameType != null) {
+						reloadScenario(path, gameType);
+					}
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			//closed
+		}
+	}
+	
+	//swaps in the board and every scenario, if they all load
+	private void reloadBoard() {
+		BoardTemplate boardTemplate;
+		isBoardPending = true;
+		
+		try {
+			boardTemplate = GameStateLoader.loadBoardTemplate(boardPath);
+		} catch (IOException | ParseException | SchemaMatchingException |
+				RuntimeException | AssertionError e) {
+			pathsToErrors.put(boardPath,
+					new BatchLoadResult.FileError(boardPath, e));
+			return;
+		}
+		
+		Map<GameType, byte[]> gameTypesToEncodedStates =
+				new EnumMap<>(GameType.class);
+		
+		for (Map.Entry<Path, GameType> entry :
+				scenarioPathsToGameTypes.entrySet()) {
+			byte[] encodedState = compile(entry.getKey(), boardTemplate);
+			
+			if (encodedState != null) {
+				gameTypesToEncodedStates.put(entry.getValue(), encodedState);
+			}
+		}
+		
+		if (gameTypesToEncodedStates.size() ==
+				scenarioPathsToGameTypes.size()) {
+			definitions = new Definitions(boardTemplate,
+					gameTypesToEncodedStates);
+			isBoardPending = false;
+			pathsToErrors.remove(boardPath);
+		}
+		else {
+			pathsToErrors.put(boardPath, new BatchLoadResult.FileError(
+					boardPath, new IllegalStateException("Board not applied, "
+							+ "as a scenario failed to load on it")));
+		}
+	}
+	
+	private void reloadScenario(Path path, GameType gameType) {
+		Definitions current = definitions;
+		byte[] encodedState = compile(path, current.boardTemplate);
+		
+		if (encodedState != null) {
+			Map<GameType, byte[]> gameTypesToEncodedStates =
+					new EnumMap<>(current.gameTypesToEncodedStates);
+			gameTypesToEncodedStates.put(gameType, encodedState);
+			
+			definitions = new Definitions(current.boardTemplate,
+					gameTypesToEncodedStates);
+		}
+	}
+	
+	/**
+	 * @return the encoded state of the scenario at path, played on the board
+	 * of boardTemplate; null if it fails to load, which is recorded
+	 */
+	private byte[] compile(Path path, BoardTemplate boardTemplate) {
+		try {
+			byte[] result = GameStateCodec.encode(
+					GameStateLoader.load(path, boardTemplate));
+			pathsToErrors.remove(path);
+			
+			return result;
+		} catch (IOException | ParseException | SchemaMatchingException |
+				RuntimeException | AssertionError e) {
+			pathsToErrors.put(path, new BatchLoadResult.FileError(path, e));
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * A board and the encoded initial state of every game type on it.
+	 * Immutable.
+	 *
+	 */
+	private static final class Definitions {
+		final BoardTemplate boardTemplate;
+		final Map<GameType, byte[]> gameTypesToEncodedStates;
+		
+		Definitions(BoardTemplate boardTemplate,
+				Map<GameType, byte[]> gameTypesToEncodedStates) {
+			this.boardTemplate = boardTemplate;
+			this.gameTypesToEncodedStates = gameTypesToEncodedStates;
+			
+			assert gameTypesToEncodedStates.size() ==
+					GameType.values().length : "Missing game types";
+		}
+	}
+}
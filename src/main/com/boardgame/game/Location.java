@@ -1,89 +1,139 @@
 package com.boardgame.game;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
+
+import com.boardgame.game.AbstractUnit.UnitString;
 
 final class Location {
+	private final int index;
 	private final String name;
 	private final Terrain terrain;
 	private final Base base;
 	private final int supply;
 	private final int invest;
 	
-	private final Set<Location> adjacentLocations;
-	
-	//owner == null -> units.isEmpty()
+	//owner == null -> numUnits == 0
 	//actionToken != null -> owner != null
-	//actionToken != null -> !units.isEmpty()
+	//actionToken != null -> numUnits > 0
 	//base != null -> terrain = LAND
+	//routedUnitCounts[i] <= unitCounts[i]
+	//unitCounts[i] > 0 -> unitTypes[i] != null
 	
-	private final Collection<AbstractUnit> units;
+	//indexed by unit string ordinal
+	private final int[] unitCounts;
+	private final int[] routedUnitCounts;
+	private final AbstractUnit[] unitTypes;
+	private int numUnits;
 	private Faction owner;
 	private AbstractActionToken actionToken;
 	
+	//the xor of the Zobrist keys of the owner, units and token
+	private long zobristHash;
+	
+	private final List<LocationObserver> observers;
+	
 	enum Terrain {
 		LAND,
 		SEA,
 		PORT
 	}
 	
-	private Location(String name, Terrain terrain, Base base, int supply,
-			int invest, Set<Location> adjacentLocations, 
-			Collection<AbstractUnit> units, Faction owner) {
+	private Location(int index, String name, Terrain terrain, Base base, 
+			int supply, int invest, Collection<AbstractUnit> units, 
+			Faction owner) {
+		this.index = index;
 		this.name = name;
 		this.terrain = terrain;
 		this.base = base;
 		this.supply = supply;
 		this.invest = invest;
-		this.adjacentLocations = adjacentLocations;
-		this.units = units;
+		this.unitCounts = new int[UnitString.values().length];
+		this.routedUnitCounts = new int[UnitString.values().length];
+		this.unitTypes = new AbstractUnit[UnitString.values().length];
+		this.numUnits = 0;
 		this.owner = owner;
 		this.actionToken = null;
+		this.observers = new ArrayList<>();
+		
+		for (AbstractUnit unit : units) {
+			countUnit(unit, 1);
+		}
+		
+		this.zobristHash = ZobristKeys.owner(index, owner) ^ hashUnits();
 		
 		checkRep();
 	}
 	
-	Location(String name, Terrain terrain, Base base, int supply, int invest) {
-		this(name, terrain, base, supply, invest, new HashSet<>(), 
+	Location(int index, String name, Terrain terrain, Base base, int supply, 
+			int invest) {
+		this(index, name, terrain, base, supply, invest, 
 				new ArrayList<AbstractUnit>(), null);
 		checkRep();
 	}
 	
-	Location(Location location, Base base, Set<Location> adjacentLocations, 
-			Collection<AbstractUnit> units, Faction owner) {
-		this(location.name, location.terrain, base, location.supply,
-				location.invest, adjacentLocations, units, owner);
+	Location(Location location, Base base, Collection<AbstractUnit> units, 
+			Faction owner) {
+		this(location.index, location.name, location.terrain, base, 
+				location.supply, location.invest, units, owner);
 		checkRep();
 	}
 	
-	boolean addAdjacentLocation(Location other) {
+	void addObserver(LocationObserver observer) {
+		assert observer != null : "Null observer";
+		observers.add(observer);
+	}
+	
+	/**
+	 * @throws IllegalStateException if there is no owner
+	 */
+	void addUnit(AbstractUnit unit) {
 		checkRep();
-		assert other != null : "Null location";
-		assert !this.equals(other) : "Same location";
+		assert unit != null : "Null unit";
 		
-		boolean result = adjacentLocations.add(other);
+		if (owner == null) {
+			throw new IllegalStateException("No owner.");
+		}
+		
+		int previousNumUnits = numUnits;
+		countUnit(unit, 1);
 		
 		checkRep();
-		return result;
+		
+		for (LocationObserver observer : observers) {
+			observer.unitsChanged(this, owner, previousNumUnits);
+		}
 	}
 	
 	/**
+	 * Adds all of the given units at once, notifying observers once.
 	 * @throws IllegalStateException if there is no owner
 	 */
-	void addUnit(AbstractUnit unit) {
+	void addUnits(Collection<AbstractUnit> units) {
 		checkRep();
-		assert unit != null : "Null unit";
+		assert units != null : "Null units";
 		
 		if (owner == null) {
 			throw new IllegalStateException("No owner.");
 		}
 		
-		boolean result = units.add(unit);
+		int previousNumUnits = numUnits;
+		
+		for (AbstractUnit unit : units) {
+			assert unit != null : "Null unit";
+			countUnit(unit, 1);
+		}
 		
-		assert(result);
 		checkRep();
+		
+		if (numUnits != previousNumUnits) {
+			for (LocationObserver observer : observers) {
+				observer.unitsChanged(this, owner, previousNumUnits);
+			}
+		}
 	}
 	
 	/**
@@ -97,27 +147,182 @@ final class Location {
 			throw new IllegalStateException("No owner.");
 		}
 		
-		boolean result = units.remove(unit);
+		int previousNumUnits = numUnits;
+		boolean result = unitCounts[unit.getUnitString().ordinal()] > 0;
+		
+		if (result) {
+			countUnit(unit, -1);
+		}
+		
+		notifyUnitsRemoved(previousNumUnits);
+		
+		return result;
+	}
+	
+	/**
+	 * Removes all of the given units at once, notifying observers once. 
+	 * Unrouted units are removed before routed ones.
+	 * @throws IllegalStateException if there is no owner
+	 * @return whether the units were removed; if not, nothing is removed
+	 */
+	boolean removeUnits(Collection<AbstractUnit> units) {
+		checkRep();
+		assert units != null : "Null units";
+		
+		if (owner == null) {
+			throw new IllegalStateException("No owner.");
+		}
+		
+		if (!hasAllUnits(units)) {
+			return false;
+		}
+		
+		int previousNumUnits = numUnits;
 		
-		if (units.isEmpty()) {
+		for (AbstractUnit unit : units) {
+			countUnit(unit, -1);
+		}
+		
+		notifyUnitsRemoved(previousNumUnits);
+		
+		return true;
+	}
+	
+	//clears the owner if no units are left
+	private void notifyUnitsRemoved(int previousNumUnits) {
+		Faction previousOwner = owner;
+		
+		if (numUnits == 0) {
 			owner = null;
+			zobristHash ^= ZobristKeys.owner(index, previousOwner);
 		}
 		
 		checkRep();
+		
+		if (numUnits != previousNumUnits) {
+			for (LocationObserver observer : observers) {
+				observer.unitsChanged(this, previousOwner, previousNumUnits);
+			}
+		}
+		
+		if (owner != previousOwner) {
+			for (LocationObserver observer : observers) {
+				observer.ownerChanged(this, previousOwner);
+			}
+		}
+	}
+	
+	//removals take unrouted units first
+	private void countUnit(AbstractUnit unit, int delta) {
+		int i = unit.getUnitString().ordinal();
+		
+		assert unitTypes[i] == null || unitTypes[i] == unit : 
+			"Two types for one unit string";
+		
+		UnitString unitString = unit.getUnitString();
+		zobristHash ^= ZobristKeys.units(index, unitString, unitCounts[i]) ^ 
+				ZobristKeys.routedUnits(index, unitString, routedUnitCounts[i]);
+		
+		unitTypes[i] = unit;
+		unitCounts[i] += delta;
+		numUnits += delta;
+		
+		if (routedUnitCounts[i] > unitCounts[i]) {
+			routedUnitCounts[i] = unitCounts[i];
+		}
+		
+		zobristHash ^= ZobristKeys.units(index, unitString, unitCounts[i]) ^ 
+				ZobristKeys.routedUnits(index, unitString, routedUnitCounts[i]);
+	}
+	
+	//the xor of the Zobrist keys of every unit count and routed unit count
+	private long hashUnits() {
+		long result = 0;
+		
+		for (UnitString unitString : UnitString.values()) {
+			int i = unitString.ordinal();
+			result ^= ZobristKeys.units(index, unitString, unitCounts[i]) ^ 
+					ZobristKeys.routedUnits(index, unitString, 
+							routedUnitCounts[i]);
+		}
+		
 		return result;
 	}
 	
 	boolean hasUnits() {
 		checkRep();
-		return !units.isEmpty();
+		return numUnits > 0;
 	}
 
 	int getNumUnits() {
-		return units.size();
+		return numUnits;
+	}
+	
+	int getNumUnits(UnitString unitString) {
+		return unitCounts[unitString.ordinal()];
+	}
+	
+	int getNumRoutedUnits(UnitString unitString) {
+		return routedUnitCounts[unitString.ordinal()];
+	}
+	
+	/**
+	 * Marks every unit on this location as routed.
+	 */
+	void routeUnits() {
+		if (Arrays.equals(routedUnitCounts, unitCounts)) {
+			return;
+		}
+		
+		zobristHash ^= hashUnits();
+		System.arraycopy(unitCounts, 0, routedUnitCounts, 0, unitCounts.length);
+		zobristHash ^= hashUnits();
+		checkRep();
+		notifyRoutingChanged();
+	}
+	
+	/**
+	 * Marks every unit on this location as not routed.
+	 */
+	void unrouteUnits() {
+		if (!hasRoutedUnits()) {
+			return;
+		}
+		
+		zobristHash ^= hashUnits();
+		Arrays.fill(routedUnitCounts, 0);
+		zobristHash ^= hashUnits();
+		checkRep();
+		notifyRoutingChanged();
+	}
+	
+	private boolean hasRoutedUnits() {
+		for (int count : routedUnitCounts) {
+			if (count > 0) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	//routing leaves the number of units unchanged
+	private void notifyRoutingChanged() {
+		for (LocationObserver observer : observers) {
+			observer.unitsChanged(this, owner, numUnits);
+		}
 	}
 	
 	Collection<AbstractUnit> getUnits() {
-		return new ArrayList<>(units);
+		List<AbstractUnit> result = new ArrayList<>(numUnits);
+		
+		for (int i = 0; i < unitCounts.length; i++) {
+			for (int n = 0; n < unitCounts[i]; n++) {
+				result.add(unitTypes[i]);
+			}
+		}
+		
+		return result;
 	}
 	
 	/**
@@ -137,10 +342,17 @@ final class Location {
 		
 		if (!hasToken) {
 			this.actionToken = actionToken;	
+			zobristHash ^= ZobristKeys.token(index, actionToken);
 		}
 		
 		checkRep();
 		
+		if (!hasToken) {
+			for (LocationObserver observer : observers) {
+				observer.tokenChanged(this, null);
+			}
+		}
+		
 		return !hasToken;
 	}
 	
@@ -160,9 +372,16 @@ final class Location {
 			throw new IllegalStateException("There are still units.");
 		}
 		
+		Faction previousOwner = this.owner;
 		this.owner = owner;
+		zobristHash ^= ZobristKeys.owner(index, previousOwner) ^ 
+				ZobristKeys.owner(index, owner);
 		
 		checkRep();
+		
+		for (LocationObserver observer : observers) {
+			observer.ownerChanged(this, previousOwner);
+		}
 	}
 	
 	Faction getOwner() {
@@ -175,15 +394,18 @@ final class Location {
 		return actionToken;
 	}
 	
-	Set<Location> getAdjacentLocations() {
-		return new HashSet<>(adjacentLocations);
-	}
-	
 	AbstractActionToken removeActionToken() {
 		checkRep();
 		
 		AbstractActionToken previousToken = actionToken;
 		actionToken = null;
+		zobristHash ^= ZobristKeys.token(index, previousToken);
+		
+		if (previousToken != null) {
+			for (LocationObserver observer : observers) {
+				observer.tokenChanged(this, previousToken);
+			}
+		}
 		
 		return previousToken;
 	}
@@ -204,6 +426,15 @@ final class Location {
 		return name.hashCode();
 	}
 	
+	/**
+	 * @return the index of this location on its board, which is also its
+	 * position in GameState.getLocations()
+	 */
+	int getIndex() {
+		checkRep();
+		return index;
+	}
+	
 	String getName() {
 		checkRep();
 		return name;
@@ -233,13 +464,134 @@ final class Location {
 		return actionToken != null;
 	}
 	
+	/**
+	 * @return the xor of the Zobrist keys of the owner, units and token of 
+	 * this location
+	 */
+	long getZobristHash() {
+		return zobristHash;
+	}
+	
+	LocationRecord toRecord() {
+		checkRep();
+		return new LocationRecord(owner, unitCounts, routedUnitCounts, 
+				actionToken, base != null && base.getIsDefenseActive());
+	}
+	
+	/**
+	 * Sets the state of this location to record, notifying observers as if 
+	 * the token and units had been removed and then put back.
+	 * @param unitStringsToUnits  the type of every unit string
+	 */
+	void restore(LocationRecord record, 
+			Map<UnitString, AbstractUnit> unitStringsToUnits) {
+		checkRep();
+		assert record != null;
+		assert unitStringsToUnits != null;
+		
+		if (record.equals(toRecord())) {
+			return;
+		}
+		
+		AbstractActionToken previousToken = actionToken;
+		
+		if (previousToken != null) {
+			actionToken = null;
+			zobristHash ^= ZobristKeys.token(index, previousToken);
+			
+			for (LocationObserver observer : observers) {
+				observer.tokenChanged(this, previousToken);
+			}
+		}
+		
+		int previousNumUnits = numUnits;
+		
+		if (previousNumUnits > 0) {
+			zobristHash ^= hashUnits();
+			Arrays.fill(unitCounts, 0);
+			Arrays.fill(routedUnitCounts, 0);
+			numUnits = 0;
+			
+			for (LocationObserver observer : observers) {
+				observer.unitsChanged(this, owner, previousNumUnits);
+			}
+		}
+		
+		Faction previousOwner = owner;
+		
+		if (previousOwner != record.getOwner()) {
+			owner = record.getOwner();
+			zobristHash ^= ZobristKeys.owner(index, previousOwner) ^ 
+					ZobristKeys.owner(index, owner);
+			
+			for (LocationObserver observer : observers) {
+				observer.ownerChanged(this, previousOwner);
+			}
+		}
+		
+		for (UnitString unitString : UnitString.values()) {
+			int i = unitString.ordinal();
+			
+			if (record.getNumUnits(unitString) > 0) {
+				unitTypes[i] = unitStringsToUnits.get(unitString);
+			}
+			
+			unitCounts[i] = record.getNumUnits(unitString);
+			routedUnitCounts[i] = record.getNumRoutedUnits(unitString);
+			numUnits += unitCounts[i];
+		}
+		
+		zobristHash ^= hashUnits();
+		checkRep();
+		
+		if (numUnits > 0) {
+			for (LocationObserver observer : observers) {
+				observer.unitsChanged(this, owner, 0);
+			}
+		}
+		
+		if (base != null) {
+			base.setIsDefenseActive(record.getIsBaseDefenseActive());
+		}
+		
+		actionToken = record.getActionToken();
+		zobristHash ^= ZobristKeys.token(index, actionToken);
+		checkRep();
+		
+		if (actionToken != null) {
+			for (LocationObserver observer : observers) {
+				observer.tokenChanged(this, null);
+			}
+		}
+	}
+	
 	boolean hasAllUnits(Collection<AbstractUnit> otherUnits) {
+		return hasAllUnits(otherUnits, unitCounts, null);
+	}
+	
+	/**
+	 * @return whether this location has all of otherUnits, none of them routed
+	 */
+	boolean hasAllUnroutedUnits(Collection<AbstractUnit> otherUnits) {
+		return hasAllUnits(otherUnits, unitCounts, routedUnitCounts);
+	}
+	
+	//routedCounts may be null, meaning none are routed
+	private static boolean hasAllUnits(Collection<AbstractUnit> otherUnits, 
+			int[] counts, int[] routedCounts) {
 		assert otherUnits != null;
 		
-		Collection<AbstractUnit> unitsCopy = new ArrayList<>(units);
+		int[] otherCounts = new int[counts.length];
 		
 		for (AbstractUnit unit : otherUnits) {
-			if (!unitsCopy.remove(unit)) {
+			int i = unit.getUnitString().ordinal();
+			int available = counts[i];
+			
+			if (routedCounts != null) {
+				available -= routedCounts[i];
+			}
+			
+			if (++otherCounts[i] > available) {
 				return false;
 			}
 		}
@@ -248,35 +600,44 @@ final class Location {
 	}
 	
 	private void checkRep() {
+		assert index >= 0 : "Negative index";
 		assert name != null : "Null name";
 		assert terrain != null : "Null terrain";
-		assert base != null : "Null base";
 		assert supply >= 0 : "Negative supply";
 		assert invest >= 0 : "Negative invest";
 		
-		assert adjacentLocations != null : "Null adjacent locations";
+		assert unitCounts != null : "Null unit counts";
+		assert routedUnitCounts != null : "Null routed unit counts";
+		assert unitTypes != null : "Null unit types";
+		assert observers != null : "Null observers";
 		
-		for (Location location : adjacentLocations) {
-			assert location != null : "Null adjacent location";
-		}
+		int totalUnits = 0;
 		
-		assert units != null : "Null units";
-		
-		for (AbstractUnit unit : units) {
-			assert unit != null : "Null unit";
+		for (int i = 0; i < unitCounts.length; i++) {
+			assert unitCounts[i] >= 0 : "Negative unit count";
+			assert routedUnitCounts[i] >= 0 && 
+					routedUnitCounts[i] <= unitCounts[i] : "Bad routed count";
+			assert unitCounts[i] == 0 || unitTypes[i] != null : 
+				"Missing unit type";
+			totalUnits += unitCounts[i];
 		}
 		
+		assert totalUnits == numUnits : "Unit count mismatch";
+		
 		if (owner == null) {
-			assert units.isEmpty();
+			assert numUnits == 0;
 		}
 		
 		if (actionToken != null) {
 			assert owner != null : "Token on location with no owner";
-			assert !units.isEmpty() : "Token on empty location";
+			assert numUnits > 0 : "Token on empty location";
 		}
 		
 		if (base != null) {
 			assert terrain == Terrain.LAND : "Base on non-land";
 		}
+		
+		assert zobristHash == (ZobristKeys.owner(index, owner) ^ hashUnits() ^ 
+				ZobristKeys.token(index, actionToken)) : "Stale Zobrist hash";
 	}
 }
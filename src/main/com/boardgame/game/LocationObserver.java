@@ -0,0 +1,27 @@
+package com.boardgame.game;
+
+/**
+ * Receives notifications when the dynamic state of a location changes, so
+ * that per-game indexes over the board can be kept up to date incrementally.
+ *
+ */
+interface LocationObserver {
+	/**
+	 * Called after units were added to or removed from location.
+	 * @param owner  the owner of the units, not null
+	 * @param previousNumUnits  the number of units before the change
+	 */
+	void unitsChanged(Location location, Faction owner, int previousNumUnits);
+	
+	/**
+	 * Called after the owner of location changed.
+	 * @param previousOwner  the owner before the change, may be null
+	 */
+	void ownerChanged(Location location, Faction previousOwner);
+	
+	/**
+	 * Called after a token was placed on or removed from location.
+	 * @param previousToken  the token before the change, may be null
+	 */
+	void tokenChanged(Location location, AbstractActionToken previousToken);
+}
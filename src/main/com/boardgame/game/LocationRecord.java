@@ -0,0 +1,91 @@
+package com.boardgame.game;
+
+import java.util.Arrays;
+
+import com.boardgame.game.AbstractUnit.UnitString;
+
+/**
+ * The state of a location at one version of a game. Immutable.
+ *
+ */
+final class LocationRecord {
+	private final Faction owner;
+	//indexed by unit string ordinal
+	private final int[] unitCounts;
+	private final int[] routedUnitCounts;
+	private final AbstractActionToken actionToken;
+	private final boolean isBaseDefenseActive;
+	
+	LocationRecord(Faction owner, int[] unitCounts, int[] routedUnitCounts,
+			AbstractActionToken actionToken, boolean isBaseDefenseActive) {
+		this.owner = owner;
+		this.unitCounts = unitCounts.clone();
+		this.routedUnitCounts = routedUnitCounts.clone();
+		this.actionToken = actionToken;
+		this.isBaseDefenseActive = isBaseDefenseActive;
+		
+		checkRep();
+	}
+	
+	Faction getOwner() {
+		return owner;
+	}
+	
+	int getNumUnits(UnitString unitString) {
+		return unitCounts[unitString.ordinal()];
+	}
+	
+	int getNumRoutedUnits(UnitString unitString) {
+		return routedUnitCounts[unitString.ordinal()];
+	}
+	
+	int getNumUnits() {
+		int result = 0;
+		
+		for (int count : unitCounts) {
+			result += count;
+		}
+		
+		return result;
+	}
+	
+	AbstractActionToken getActionToken() {
+		return actionToken;
+	}
+	
+	boolean getIsBaseDefenseActive() {
+		return isBaseDefenseActive;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof LocationRecord)) {
+			return false;
+		}
+		
+		LocationRecord other = (LocationRecord) o;
+		
+		return owner == other.owner && actionToken == other.actionToken &&
+				isBaseDefenseActive == other.isBaseDefenseActive &&
+				Arrays.equals(unitCounts, other.unitCounts) &&
+				Arrays.equals(routedUnitCounts, other.routedUnitCounts);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(unitCounts) + (owner == null ? 0 :
+			owner.hashCode());
+	}
+	
+	private void checkRep() {
+		assert unitCounts.length == UnitString.values().length :
+			"Wrong number of unit counts";
+		assert routedUnitCounts.length == unitCounts.length :
+			"Wrong number of routed unit counts";
+		
+		for (int i = 0; i < unitCounts.length; i++) {
+			assert routedUnitCounts[i] >= 0 &&
+					routedUnitCounts[i] <= unitCounts[i] : "Bad routed count";
+		}
+	}
+}
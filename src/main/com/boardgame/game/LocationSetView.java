@@ -0,0 +1,77 @@
+package com.boardgame.game;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only set of locations backed by a bit set of location indexes.
+ * Changes to the bit set are visible through the view.
+ *
+ */
+final class LocationSetView extends AbstractSet<Location> {
+	private final List<Location> locations;
+	private final BitSet indexes;
+	
+	LocationSetView(List<Location> locations, BitSet indexes) {
+		assert locations != null;
+		assert indexes != null;
+		assert indexes.length() <= locations.size();
+		
+		this.locations = locations;
+		this.indexes = indexes;
+	}
+	
+	BitSet getIndexes() {
+		return indexes;
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Location)) {
+			return false;
+		}
+		
+		Location location = (Location) o;
+		int index = location.getIndex();
+		
+		return index < locations.size() && indexes.get(index) && 
+				locations.get(index).equals(location);
+	}
+	
+	@Override
+	public int size() {
+		return indexes.cardinality();
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return indexes.isEmpty();
+	}
+	
+	@Override
+	public Iterator<Location> iterator() {
+		return new Iterator<Location>() {
+			private int next = indexes.nextSetBit(0);
+			
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+			
+			@Override
+			public Location next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				
+				Location result = locations.get(next);
+				next = indexes.nextSetBit(next + 1);
+				
+				return result;
+			}
+		};
+	}
+}
@@ -0,0 +1,122 @@
+package com.boardgame.game;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The valid targets of the tokens on a group of source locations, with 
+ * sources and targets given as location ids from Game.IntegersToObjects.
+ * The targets of the source at position i are getTargetId(i, k) for 
+ * 0 <= k < getNumTargets(i), in ascending order of id.
+ *
+ */
+public final class LocationTargets {
+	private final int[] sourceIds;
+	private final int[] targetOffsets;
+	private final int[] targetIds;
+	
+	private LocationTargets(int[] sourceIds, int[] targetOffsets, 
+			int[] targetIds) {
+		this.sourceIds = sourceIds;
+		this.targetOffsets = targetOffsets;
+		this.targetIds = targetIds;
+	}
+	
+	/**
+	 * @return the number of source locations
+	 */
+	public int getNumSources() {
+		return sourceIds.length;
+	}
+	
+	/**
+	 * @param position  the position of a source, in [0, getNumSources())
+	 * @return the location id of the source at the given position
+	 */
+	public int getSourceId(int position) {
+		return sourceIds[position];
+	}
+	
+	/**
+	 * @param position  the position of a source, in [0, getNumSources())
+	 * @return the number of targets of the source at the given position
+	 */
+	public int getNumTargets(int position) {
+		return targetOffsets[position + 1] - targetOffsets[position];
+	}
+	
+	/**
+	 * @param position  the position of a source, in [0, getNumSources())
+	 * @param targetPosition  the position of a target, in 
+	 * [0, getNumTargets(position))
+	 * @return the location id of the given target of the given source
+	 */
+	public int getTargetId(int position, int targetPosition) {
+		assert targetPosition >= 0 && targetPosition < getNumTargets(position);
+		return targetIds[targetOffsets[position] + targetPosition];
+	}
+	
+	/**
+	 * @param position  the position of a source, in [0, getNumSources())
+	 * @return a copy of the location ids of the targets of the source at the
+	 * given position
+	 */
+	public int[] getTargetIds(int position) {
+		return Arrays.copyOfRange(targetIds, targetOffsets[position], 
+				targetOffsets[position + 1]);
+	}
+	
+	static class Builder {
+		private int[] sourceIds;
+		private int[] targetOffsets;
+		private int[] targetIds;
+		private int numSources;
+		private int numTargets;
+		
+		Builder() {
+			this.sourceIds = new int[16];
+			this.targetOffsets = new int[17];
+			this.targetIds = new int[64];
+			this.numSources = 0;
+			this.numTargets = 0;
+		}
+		
+		/**
+		 * Adds a source with the given location id and the target location
+		 * ids set in targets.
+		 */
+		Builder addSource(int sourceId, BitSet targets) {
+			assert sourceId >= 0;
+			assert targets != null;
+			
+			if (numSources == sourceIds.length) {
+				int newLength = 2 * sourceIds.length;
+				sourceIds = Arrays.copyOf(sourceIds, newLength);
+				targetOffsets = Arrays.copyOf(targetOffsets, newLength + 1);
+			}
+			
+			int cardinality = targets.cardinality();
+			
+			if (numTargets + cardinality > targetIds.length) {
+				targetIds = Arrays.copyOf(targetIds, 
+						Math.max(2 * targetIds.length, numTargets + cardinality));
+			}
+			
+			for (int i = targets.nextSetBit(0); i >= 0; 
+					i = targets.nextSetBit(i + 1)) {
+				targetIds[numTargets++] = i;
+			}
+			
+			sourceIds[numSources++] = sourceId;
+			targetOffsets[numSources] = numTargets;
+			
+			return this;
+		}
+		
+		LocationTargets build() {
+			return new LocationTargets(Arrays.copyOf(sourceIds, numSources), 
+					Arrays.copyOf(targetOffsets, numSources + 1), 
+					Arrays.copyOf(targetIds, numTargets));
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.boardgame.game;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -35,12 +36,15 @@ final class MoveToken extends AbstractCombatToken {
 	}
 	
 	@Override
-	Set<Location> findAccessibleTargets(Location source) {
+	void findAccessibleTargets(GameState gameState, Location source, 
+			BitSet accessibleTargets) {
 		if (source.getTerrain() == Terrain.LAND) {
-			return BoardOperations.findAdjacentAndShipAccessibleLocations(source);	
+			BoardOperations.findAdjacentAndShipAccessibleLocations(gameState, 
+					source, accessibleTargets);
+			return;
 		}
 	
-		return super.findAccessibleTargets(source);
+		super.findAccessibleTargets(gameState, source, accessibleTargets);
 	}
 
 	@Override
@@ -59,13 +63,7 @@ final class MoveToken extends AbstractCombatToken {
 		Faction sourceOwner = tokenLocation.getOwner();
 		Faction targetOwner = target.getOwner();
 		
-		boolean success = true;
-		
-		for (AbstractUnit unit : unitsInvolved) {
-			if (unit.getIsRouted()) {
-				success = false;
-			}
-		}
+		boolean success = tokenLocation.hasAllUnroutedUnits(unitsInvolved);
 		
 		if (success && !game.isCombatOccurring()) {
 			if (sourceOwner != targetOwner && target.hasUnits()) {
@@ -31,7 +31,7 @@ final class OneToOneMap<K, V> {
 	}
 	
 	boolean containsValue(V value) {
-		return valueToKey.containsValue(value);
+		return valueToKey.containsKey(value);
 	}
 	
 	int size() {
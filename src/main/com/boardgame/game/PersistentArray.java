@@ -0,0 +1,156 @@
+package com.boardgame.game;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An immutable array of fixed size, stored as a tree of 32-wide nodes.
+ * Changing an element copies only the nodes on the path to it, so every
+ * version shares all of its other nodes with the version it came from.
+ *
+ * @param <E>  the type of the elements, which should be immutable
+ */
+final class PersistentArray<E> {
+	private static final int BITS = 5;
+	private static final int WIDTH = 1 << BITS;
+	private static final int MASK = WIDTH - 1;
+	
+	private final int size;
+	//the bit offset of the index digit used by the root
+	private final int shift;
+	private final Object[] root;
+	
+	private PersistentArray(int size, int shift, Object[] root) {
+		this.size = size;
+		this.shift = shift;
+		this.root = root;
+		
+		checkRep();
+	}
+	
+	/**
+	 * @return an array holding the elements of list, in order
+	 */
+	static <E> PersistentArray<E> of(List<? extends E> list) {
+		assert list != null;
+		
+		int shift = 0;
+		
+		while ((long) WIDTH << shift < list.size()) {
+			shift += BITS;
+		}
+		
+		return new PersistentArray<>(list.size(), shift,
+				build(list, shift, 0));
+	}
+	
+	private static Object[] build(List<?> list, int level, int offset) {
+		Object[] node = new Object[WIDTH];
+		
+		for (int i = 0; i < WIDTH; i++) {
+			int childOffset = offset + (i << level);
+			
+			if (childOffset >= list.size()) {
+				break;
+			}
+			
+			node[i] = level == 0 ? list.get(childOffset) :
+					build(list, level - BITS, childOffset);
+		}
+		
+		return node;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	@SuppressWarnings("unchecked")
+	E get(int index) {
+		assert index >= 0 && index < size : "Index out of bounds: " + index;
+		
+		Object[] node = root;
+		
+		for (int level = shift; level > 0; level -= BITS) {
+			node = (Object[]) node[(index >>> level) & MASK];
+		}
+		
+		return (E) node[index & MASK];
+	}
+	
+	/**
+	 * @return an array equal to this one except that index holds element;
+	 * this array if it already does
+	 */
+	PersistentArray<E> with(int index, E element) {
+		assert index >= 0 && index < size : "Index out of bounds: " + index;
+		
+		if (get(index) == element) {
+			return this;
+		}
+		
+		return new PersistentArray<>(size, shift,
+				with(root, shift, index, element));
+	}
+	
+	private static Object[] with(Object[] node, int level, int index,
+			Object element) {
+		Object[] copy = node.clone();
+		int slot = (index >>> level) & MASK;
+		
+		if (level == 0) {
+			copy[slot] = element;
+		}
+		else {
+			copy[slot] = with((Object[]) node[slot], level - BITS, index,
+					element);
+		}
+		
+		return copy;
+	}
+	
+	/**
+	 * Sets, in differentIndexes, every index at which this array and other, 
+	 * a version of the same array, hold different elements. Nodes the two 
+	 * share are skipped, so this costs time proportional to the changes 
+	 * between them.
+	 */
+	void findDifferences(PersistentArray<E> other, BitSet differentIndexes) {
+		assert other != null;
+		assert other.size == size && other.shift == shift : 
+			"Not a version of this array";
+		assert differentIndexes != null;
+		
+		findDifferences(root, other.root, shift, 0, differentIndexes);
+	}
+	
+	private static void findDifferences(Object[] node, Object[] otherNode, 
+			int level, int offset, BitSet differentIndexes) {
+		if (node == otherNode) {
+			return;
+		}
+		
+		for (int i = 0; i < WIDTH; i++) {
+			if (node[i] == otherNode[i]) {
+				continue;
+			}
+			
+			int childOffset = offset + (i << level);
+			
+			if (level == 0) {
+				differentIndexes.set(childOffset);
+			}
+			else {
+				findDifferences((Object[]) node[i], (Object[]) otherNode[i], 
+						level - BITS, childOffset, differentIndexes);
+			}
+		}
+	}
+	
+	private void checkRep() {
+		assert size >= 0 : "Negative size";
+		assert shift >= 0 && shift % BITS == 0 : "Bad shift";
+		assert root != null : "Null root";
+		assert root.length == WIDTH : "Bad root width";
+	}
+}
@@ -17,6 +17,12 @@ final class Player {
 	private int cashInHand;
 	private int cashPool;
 	
+	//incremented by every change, so records can tell whether they are stale
+	private long modCount;
+	
+	//the xor of the Zobrist keys of the cash, cards, units and tokens
+	private long zobristHash;
+	
 	Player(Set<AbstractCombatCard> combatCardsInHand, 
 			Set<AbstractCombatCard> combatCardsDiscard, 
 			Collection<AbstractUnit> unitsInHand, 
@@ -31,6 +37,8 @@ final class Player {
 		this.cashInHand = cashInHand;
 		this.cashPool = cashPool;
 		
+		this.zobristHash = computeZobristHash();
+		
 		checkRep();
 	}
 	
@@ -39,6 +47,7 @@ final class Player {
 		assert amount >= 0 : "Negative amount";
 		
 		int initialTotal = cashInHand + cashPool;
+		long previousCashHash = hashCash();
 		
 		if (cashPool >= amount) {
 			cashInHand += amount;
@@ -53,6 +62,8 @@ final class Player {
 		
 		assert initialTotal == finalTotal : "Lost money";
 
+		zobristHash ^= previousCashHash ^ hashCash();
+		modCount++;
 		checkRep();
 	}
 	
@@ -61,6 +72,7 @@ final class Player {
 		assert amount >= 0 : "Negative amount";
 		
 		int initialTotal = cashInHand + cashPool;
+		long previousCashHash = hashCash();
 		
 		if (cashInHand >= amount) {
 			cashInHand -= amount;
@@ -75,6 +87,8 @@ final class Player {
 		
 		assert initialTotal == finalTotal : "Lost money";
 
+		zobristHash ^= previousCashHash ^ hashCash();
+		modCount++;
 		checkRep();
 	}
 	
@@ -85,10 +99,13 @@ final class Player {
 		boolean result = false;
 		
 		if (cashInHand >= amount) {
+			zobristHash ^= ZobristKeys.cashInHand(cashInHand);
 			cashInHand -= amount;
+			zobristHash ^= ZobristKeys.cashInHand(cashInHand);
 			result = true;
 		}
 		
+		modCount++;
 		checkRep();
 		return result;
 	}
@@ -97,8 +114,11 @@ final class Player {
 		checkRep();
 		assert amount >= 0 : "Negative amount";
 		
+		zobristHash ^= ZobristKeys.cashPool(cashPool);
 		cashPool += amount;
+		zobristHash ^= ZobristKeys.cashPool(cashPool);
 		
+		modCount++;
 		checkRep();
 	}
 	
@@ -111,8 +131,11 @@ final class Player {
 		if (removeResult) {
 			boolean addResult = combatCardsDiscard.add(card);
 			assert(addResult);
+			zobristHash ^= ZobristKeys.combatCardInHand(card) ^ 
+					ZobristKeys.combatCardDiscard(card);
 		}
 		
+		modCount++;
 		checkRep();
 		return removeResult;
 	}
@@ -120,9 +143,15 @@ final class Player {
 	void putDiscardPileIntoHand() {
 		checkRep();
 		
+		for (AbstractCombatCard card : combatCardsDiscard) {
+			zobristHash ^= ZobristKeys.combatCardDiscard(card) ^ 
+					ZobristKeys.combatCardInHand(card);
+		}
+		
 		combatCardsInHand.addAll(combatCardsDiscard);
 		combatCardsDiscard.clear();
 		
+		modCount++;
 		checkRep();
 	}
 	
@@ -132,6 +161,11 @@ final class Player {
 		
 		boolean result = unitsInHand.remove(unit);
 		
+		if (result) {
+			zobristHash ^= ZobristKeys.unitInHand(unit);
+		}
+		
+		modCount++;
 		checkRep();
 		return result;
 	}
@@ -143,6 +177,8 @@ final class Player {
 		boolean result = unitsInHand.add(unit);
 		
 		assert result;
+		zobristHash ^= ZobristKeys.unitInHand(unit);
+		modCount++;
 		checkRep();
 	}
 	
@@ -154,10 +190,13 @@ final class Player {
 	void resetTokens(Set<AbstractActionToken> otherTokens) {
 		checkRep();
 		
+		zobristHash ^= hashTokens();
 		tokens.clear();
 		tokens.addAll(otherTokens);
 		numSpecialTokensUsed = 0;
+		zobristHash ^= hashTokens();
 		
+		modCount++;
 		checkRep();
 	}
 	
@@ -166,11 +205,18 @@ final class Player {
 		assert token != null;
 		
 		boolean result = tokens.remove(token);
+		
+		if (result) {
+			zobristHash ^= ZobristKeys.tokenInHand(token);
+		}
 
 		if (token.getIsSpecial()) {
+			zobristHash ^= ZobristKeys.specialTokensUsed(numSpecialTokensUsed);
 			numSpecialTokensUsed++;
+			zobristHash ^= ZobristKeys.specialTokensUsed(numSpecialTokensUsed);
 		}
 		
+		modCount++;
 		checkRep();
 		
 		return result;
@@ -182,11 +228,15 @@ final class Player {
 		
 		boolean result = tokens.add(token);
 		assert result;
+		zobristHash ^= ZobristKeys.tokenInHand(token);
 		
 		if (token.getIsSpecial()) {
+			zobristHash ^= ZobristKeys.specialTokensUsed(numSpecialTokensUsed);
 			numSpecialTokensUsed--;
+			zobristHash ^= ZobristKeys.specialTokensUsed(numSpecialTokensUsed);
 		}
 		
+		modCount++;
 		checkRep();
 	}
 	
@@ -224,6 +274,84 @@ final class Player {
 		return numSpecialTokensUsed;
 	}
 	
+	long getModCount() {
+		return modCount;
+	}
+	
+	/**
+	 * @return the xor of the Zobrist keys of the cash, cards, units and 
+	 * tokens of this player, which does not depend on its faction
+	 */
+	long getZobristHash() {
+		return zobristHash;
+	}
+	
+	private long hashCash() {
+		return ZobristKeys.cashInHand(cashInHand) ^ 
+				ZobristKeys.cashPool(cashPool);
+	}
+	
+	//tokens are hashed with the number of special tokens used, which is 
+	//reset with them
+	private long hashTokens() {
+		long result = ZobristKeys.specialTokensUsed(numSpecialTokensUsed);
+		
+		for (AbstractActionToken token : tokens) {
+			result ^= ZobristKeys.tokenInHand(token);
+		}
+		
+		return result;
+	}
+	
+	private long computeZobristHash() {
+		long result = hashCash() ^ hashTokens();
+		
+		for (AbstractCombatCard card : combatCardsInHand) {
+			result ^= ZobristKeys.combatCardInHand(card);
+		}
+		
+		for (AbstractCombatCard card : combatCardsDiscard) {
+			result ^= ZobristKeys.combatCardDiscard(card);
+		}
+		
+		for (AbstractUnit unit : unitsInHand) {
+			result ^= ZobristKeys.unitInHand(unit);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Sets the state of this player to record.
+	 */
+	void restore(PlayerRecord record) {
+		checkRep();
+		assert record != null;
+		
+		combatCardsInHand.clear();
+		combatCardsInHand.addAll(record.getCombatCardsInHand());
+		combatCardsDiscard.clear();
+		combatCardsDiscard.addAll(record.getCombatCardsDiscard());
+		unitsInHand.clear();
+		unitsInHand.addAll(record.getUnitsInHand());
+		tokens.clear();
+		tokens.addAll(record.getTokens());
+		numSpecialTokensUsed = record.getNumSpecialTokensUsed();
+		cashInHand = record.getCashInHand();
+		cashPool = record.getCashPool();
+		zobristHash = computeZobristHash();
+		
+		modCount++;
+		checkRep();
+	}
+	
+	PlayerRecord toRecord() {
+		checkRep();
+		return new PlayerRecord(combatCardsInHand, combatCardsDiscard, 
+				unitsInHand, tokens, numSpecialTokensUsed, cashInHand, cashPool, 
+				modCount);
+	}
+	
 	private void checkRep() {
 		assert combatCardsInHand != null : "Null combat cards in hand";
 		assert combatCardsDiscard != null : "Null combat cards discard";
@@ -250,5 +378,7 @@ final class Player {
 		for (AbstractActionToken token : tokens) {
 			assert token != null : "Null token";
 		}
+		
+		assert zobristHash == computeZobristHash() : "Stale Zobrist hash";
 	}
 }
@@ -0,0 +1,74 @@
+package com.boardgame.game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The state of a player at one version of a game. Immutable.
+ *
+ */
+final class PlayerRecord {
+	private final Set<AbstractCombatCard> combatCardsInHand;
+	private final Set<AbstractCombatCard> combatCardsDiscard;
+	private final Collection<AbstractUnit> unitsInHand;
+	private final Set<AbstractActionToken> tokens;
+	private final int numSpecialTokensUsed;
+	private final int cashInHand;
+	private final int cashPool;
+	
+	//the modification count of the player when this was recorded
+	private final long modCount;
+	
+	PlayerRecord(Set<AbstractCombatCard> combatCardsInHand,
+			Set<AbstractCombatCard> combatCardsDiscard,
+			Collection<AbstractUnit> unitsInHand,
+			Set<AbstractActionToken> tokens, int numSpecialTokensUsed,
+			int cashInHand, int cashPool, long modCount) {
+		this.combatCardsInHand =
+				Collections.unmodifiableSet(new HashSet<>(combatCardsInHand));
+		this.combatCardsDiscard =
+				Collections.unmodifiableSet(new HashSet<>(combatCardsDiscard));
+		this.unitsInHand =
+				Collections.unmodifiableCollection(new ArrayList<>(unitsInHand));
+		this.tokens = Collections.unmodifiableSet(new HashSet<>(tokens));
+		this.numSpecialTokensUsed = numSpecialTokensUsed;
+		this.cashInHand = cashInHand;
+		this.cashPool = cashPool;
+		this.modCount = modCount;
+	}
+	
+	Set<AbstractCombatCard> getCombatCardsInHand() {
+		return combatCardsInHand;
+	}
+	
+	Set<AbstractCombatCard> getCombatCardsDiscard() {
+		return combatCardsDiscard;
+	}
+	
+	Collection<AbstractUnit> getUnitsInHand() {
+		return unitsInHand;
+	}
+	
+	Set<AbstractActionToken> getTokens() {
+		return tokens;
+	}
+	
+	int getNumSpecialTokensUsed() {
+		return numSpecialTokensUsed;
+	}
+	
+	int getCashInHand() {
+		return cashInHand;
+	}
+	
+	int getCashPool() {
+		return cashPool;
+	}
+	
+	long getModCount() {
+		return modCount;
+	}
+}
@@ -1,5 +1,10 @@
 package com.boardgame.game;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.Stack;
 
 class RoundPhase {
@@ -60,6 +65,8 @@ class RoundPhase {
 		ROUND_END(null) {
 			@Override
 			void onBegin(Game game) {
+				game.unrouteUnits();
+				game.scheduleCheckpoint();
 				//check if game is over
 			}
 		},
@@ -123,6 +130,15 @@ class RoundPhase {
 		}
 	}
 	
+	//the phases in which every placed token can be seen, from their display
+	//in the planning phase until they are removed in the action phase
+	private static final Set<Phase> TOKENS_REVEALED_PHASES = EnumSet.of(
+			Phase.PLAN_DISPLAY_TOKENS, Phase.PLAN_SIGHT_POWER, Phase.PLAN_END,
+			Phase.ACTION_BEGIN, Phase.ACTION_RESOLVE_TOKENS,
+			Phase.ACTION_REMOVE_TOKENS, Phase.COMBAT_BEGIN,
+			Phase.COMBAT_ASSIST, Phase.COMBAT_CARD, Phase.COMBAT_REVEAL,
+			Phase.COMBAT_BONUS, Phase.COMBAT_RESOLUTION, Phase.COMBAT_END);
+	
 	private Stack<Phase> returnPhases;
 	private Phase currentPhase;
 	
@@ -179,6 +195,52 @@ class RoundPhase {
 		return currentPhase == phase;
 	}
 	
+	Phase getCurrentPhase() {
+		return currentPhase;
+	}
+	
+	boolean areTokensRevealed() {
+		return TOKENS_REVEALED_PHASES.contains(currentPhase);
+	}
+	
+	/**
+	 * Writes the current phase, then the phases to return to, from the 
+	 * last to be returned to.
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeByte(currentPhase.ordinal());
+		out.writeByte(returnPhases.size());
+		
+		for (Phase phase : returnPhases) {
+			out.writeByte(phase.ordinal());
+		}
+	}
+	
+	/**
+	 * @throws IOException if in does not hold a round phase
+	 */
+	static RoundPhase read(DataInput in) throws IOException {
+		RoundPhase roundPhase = new RoundPhase();
+		roundPhase.currentPhase = readPhase(in);
+		int numReturnPhases = in.readUnsignedByte();
+		
+		for (int i = 0; i < numReturnPhases; i++) {
+			roundPhase.returnPhases.push(readPhase(in));
+		}
+		
+		return roundPhase;
+	}
+	
+	private static Phase readPhase(DataInput in) throws IOException {
+		int ordinal = in.readUnsignedByte();
+		
+		if (ordinal >= Phase.values().length) {
+			throw new IOException("Unknown phase " + ordinal);
+		}
+		
+		return Phase.values()[ordinal];
+	}
+	
 	private void nextHelper(Game game, Phase next) {
 		assert game != null;
 		assert next != null;
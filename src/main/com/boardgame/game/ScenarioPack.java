@@ -0,0 +1,249 @@
+package com.boardgame.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.simple.parser.ParseException;
+
+import com.boardgame.game.GameStateLoader.GameType;
+
+/**
+ * The initial state of each game type, compiled ahead of time from its
+ * board and scenario files into the encoding of GameStateCodec. The files
+ * are parsed and validated when the pack is compiled, so a game created
+ * from the pack only has to decode its state.
+ *
+ * A pack is compiled at build time by running main, and shipped as the
+ * resource RESOURCE next to the files it was compiled from. It holds a
+ * digest of those files, so a pack they have changed since is found stale
+ * when it is read, and the game types are then compiled from the files
+ * instead. A pack starts with MAGIC and FORMAT_VERSION, followed by the
+ * digest, then the name and encoded state of each of its game types.
+ *
+ */
+final class ScenarioPack {
+	static final int MAGIC = 0x4753504b;
+	static final int FORMAT_VERSION = 2;
+	static final String RESOURCE = "res/scenarios.pack";
+	
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	
+	//of the files the pack was compiled from
+	private final byte[] sourceDigest;
+	//never modified once the pack is made
+	private final Map<GameType, byte[]> gameTypesToEncodedStates;
+	
+	private ScenarioPack(byte[] sourceDigest, 
+			Map<GameType, byte[]> gameTypesToEncodedStates) {
+		this.sourceDigest = sourceDigest;
+		this.gameTypesToEncodedStates = gameTypesToEncodedStates;
+	}
+	
+	private static ScenarioPack empty() {
+		return new ScenarioPack(new byte[0], new EnumMap<>(GameType.class));
+	}
+	
+	/**
+	 * Loads every game type from its files and encodes its state.
+	 * @throws IOException if a file can't be read
+	 * @throws ParseException if a file could not be parsed correctly
+	 * @throws SchemaMatchingException if a file does not match its schema
+	 * @return a pack of every game type
+	 */
+	static ScenarioPack compile()
+			throws IOException, ParseException, SchemaMatchingException {
+		byte[] sourceDigest = digestSources();
+		Map<GameType, byte[]> gameTypesToEncodedStates =
+				new EnumMap<>(GameType.class);
+		
+		for (GameType gameType : GameType.values()) {
+			gameTypesToEncodedStates.put(gameType, GameStateCodec.encode(
+					GameStateLoader.loadResource(
+							GameStateLoader.getResourceName(gameType))));
+		}
+		
+		return new ScenarioPack(sourceDigest, gameTypesToEncodedStates);
+	}
+	
+	/**
+	 * Reads the pack shipped as RESOURCE, if there is one compiled from the
+	 * files shipped with it. A pack shipped without the files is trusted.
+	 * @throws IOException if the pack or the files can't be read, or if the
+	 * pack is not a pack of this format
+	 * @return the shipped pack, empty if there is none or it is stale
+	 */
+	static ScenarioPack readResource() throws IOException {
+		InputStream in;
+		
+		try {
+			in = GameStateLoader.findResource(RESOURCE).openStream();
+		} catch (FileNotFoundException e) {
+			return empty();
+		}
+		
+		ScenarioPack pack;
+		
+		try (DataInputStream dataIn =
+				new DataInputStream(new BufferedInputStream(in))) {
+			pack = read(dataIn);
+		}
+		
+		try {
+			if (!Arrays.equals(pack.sourceDigest, digestSources())) {
+				return empty();
+			}
+		} catch (FileNotFoundException e) {
+			//nothing to compare with, nor to compile from
+		}
+		
+		return pack;
+	}
+	
+	/**
+	 * @throws IOException if a file can't be read
+	 * @return the digest of the files a pack is compiled from: the board,
+	 * the schemas and the scenario of every game type
+	 */
+	static byte[] digestSources() throws IOException {
+		MessageDigest digest;
+		
+		try {
+			digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			//every Java platform has SHA-256
+			throw new AssertionError(e);
+		}
+		
+		Set<String> resources = new LinkedHashSet<>();
+		resources.add(GameStateLoader.BOARD_RESOURCE);
+		resources.add(ValidateJsonFiles.CONSTANT_SCHEMA_RESOURCE);
+		resources.add(ValidateJsonFiles.VARIABLE_SCHEMA_RESOURCE);
+		
+		for (GameType gameType : GameType.values()) {
+			resources.add(GameStateLoader.getResourceName(gameType));
+		}
+		
+		byte[] buffer = new byte[8192];
+		
+		for (String resource : resources) {
+			digest.update(resource.getBytes(StandardCharsets.UTF_8));
+			
+			try (InputStream in = 
+					GameStateLoader.findResource(resource).openStream()) {
+				int numRead;
+				
+				while ((numRead = in.read(buffer)) >= 0) {
+					digest.update(buffer, 0, numRead);
+				}
+			}
+		}
+		
+		return digest.digest();
+	}
+	
+	/**
+	 * @throws IOException if in does not hold a pack of this format
+	 */
+	static ScenarioPack read(DataInput in) throws IOException {
+		assert in != null;
+		
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a scenario pack");
+		}
+		
+		int formatVersion = GameStateCodec.readVarInt(in);
+		
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException("Unsupported scenario pack version "
+					+ formatVersion);
+		}
+		
+		byte[] sourceDigest = new byte[GameStateCodec.readVarInt(in)];
+		in.readFully(sourceDigest);
+		
+		Map<GameType, byte[]> gameTypesToEncodedStates =
+				new EnumMap<>(GameType.class);
+		int numGameTypes = GameStateCodec.readVarInt(in);
+		
+		for (int i = 0; i < numGameTypes; i++) {
+			String name = in.readUTF();
+			byte[] encodedState = new byte[GameStateCodec.readVarInt(in)];
+			in.readFully(encodedState);
+			
+			//game types are written by name, so that a pack outlives changes
+			//to the order of GameType; ones since removed are skipped
+			for (GameType gameType : GameType.values()) {
+				if (gameType.name().equals(name)) {
+					gameTypesToEncodedStates.put(gameType, encodedState);
+				}
+			}
+		}
+		
+		return new ScenarioPack(sourceDigest, gameTypesToEncodedStates);
+	}
+	
+	void write(DataOutput out) throws IOException {
+		assert out != null;
+		
+		out.writeInt(MAGIC);
+		GameStateCodec.writeVarInt(out, FORMAT_VERSION);
+		GameStateCodec.writeVarInt(out, sourceDigest.length);
+		out.write(sourceDigest);
+		GameStateCodec.writeVarInt(out, gameTypesToEncodedStates.size());
+		
+		for (Map.Entry<GameType, byte[]> entry :
+				gameTypesToEncodedStates.entrySet()) {
+			out.writeUTF(entry.getKey().name());
+			GameStateCodec.writeVarInt(out, entry.getValue().length);
+			out.write(entry.getValue());
+		}
+	}
+	
+	/**
+	 * @return the encoded initial state of gameType, null if it is not in
+	 * this pack; not to be modified
+	 */
+	byte[] getEncodedState(GameType gameType) {
+		assert gameType != null;
+		return gameTypesToEncodedStates.get(gameType);
+	}
+	
+	/**
+	 * Compiles a pack of every game type from the files the game ships with.
+	 * Arguments: packPath
+	 */
+	public static void main(String[] args)
+			throws IOException, ParseException, SchemaMatchingException {
+		if (args.length < 1) {
+			System.err.println("Usage: ScenarioPack packPath");
+			System.exit(1);
+		}
+		
+		ScenarioPack pack = compile();
+		
+		try (OutputStream out = Files.newOutputStream(Paths.get(args[0]))) {
+			DataOutputStream dataOut =
+					new DataOutputStream(new BufferedOutputStream(out));
+			pack.write(dataOut);
+			dataOut.flush();
+		}
+	}
+}
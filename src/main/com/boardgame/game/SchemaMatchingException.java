@@ -1,9 +1,39 @@
 package com.boardgame.game;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Signals that a particular game state file doesn't match its schema.
  *
  */
 public class SchemaMatchingException extends Exception {
 	private static final long serialVersionUID = 3657624554822574911L;	
+	
+	private final List<String> violations;
+	
+	public SchemaMatchingException() {
+		this(Collections.<String>emptyList());
+	}
+	
+	/**
+	 * @param violations  a description of each way the file fails to match 
+	 * its schema, not null
+	 */
+	public SchemaMatchingException(List<String> violations) {
+		super(violations.isEmpty() ? null : violations.toString());
+		
+		this.violations = Collections.unmodifiableList(
+				new ArrayList<>(violations));
+	}
+	
+	/**
+	 * @return a description of each way the file fails to match its schema,
+	 * each starting with the JSON pointer to the offending value; empty if 
+	 * they are not known
+	 */
+	public List<String> getViolations() {
+		return violations;
+	}
 }
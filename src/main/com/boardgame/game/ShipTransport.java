@@ -0,0 +1,169 @@
+package com.boardgame.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.boardgame.game.Location.Terrain;
+
+/**
+ * Maintains, for every faction, the connected components of the sea
+ * locations it occupies and the locations each component can transport
+ * units to. A faction's components are rebuilt lazily, and only after one
+ * of its sea locations became occupied or unoccupied.
+ *
+ */
+final class ShipTransport implements LocationObserver {
+	private static final int NO_COMPONENT = -1;
+	
+	private final List<Location> locations;
+	private final BoardGraph board;
+	
+	//indexed by faction ordinal, then by location index
+	private final int[][] componentIds;
+	//indexed by faction ordinal, then by component id
+	private final List<List<BitSet>> componentReaches;
+	private final boolean[] isStale;
+	
+	ShipTransport(List<Location> locations, BoardGraph board) {
+		assert locations != null;
+		assert board != null;
+		assert locations.size() == board.getNumLocations();
+		
+		int numFactions = Faction.values().length;
+		
+		this.locations = locations;
+		this.board = board;
+		this.componentIds = new int[numFactions][board.getNumLocations()];
+		this.componentReaches = new ArrayList<>(numFactions);
+		this.isStale = new boolean[numFactions];
+		
+		for (int f = 0; f < numFactions; f++) {
+			componentReaches.add(new ArrayList<BitSet>());
+			isStale[f] = true;
+		}
+	}
+	
+	@Override
+	public void unitsChanged(Location location, Faction owner,
+			int previousNumUnits) {
+		if (location.getTerrain() != Terrain.SEA) {
+			return;
+		}
+		
+		boolean wasOccupied = previousNumUnits > 0;
+		
+		if (wasOccupied != location.hasUnits()) {
+			isStale[owner.ordinal()] = true;
+		}
+	}
+	
+	@Override
+	public void ownerChanged(Location location, Faction previousOwner) {
+		if (location.getTerrain() != Terrain.SEA) {
+			return;
+		}
+		
+		if (previousOwner != null) {
+			isStale[previousOwner.ordinal()] = true;
+		}
+		
+		if (location.getOwner() != null) {
+			isStale[location.getOwner().ordinal()] = true;
+		}
+	}
+	
+	@Override
+	public void tokenChanged(Location location, 
+			AbstractActionToken previousToken) {
+		//tokens do not affect transport
+	}
+	
+	/**
+	 * Sets, in accessibleLocations, the index of every location adjacent to
+	 * origin or reachable from it through sea locations occupied by origin's
+	 * owner. The origin itself is never set.
+	 */
+	void findAccessibleLocations(Location origin, BitSet accessibleLocations) {
+		assert origin != null;
+		assert origin.getOwner() != null;
+		assert accessibleLocations != null;
+		
+		int factionIndex = origin.getOwner().ordinal();
+		
+		if (isStale[factionIndex]) {
+			rebuild(factionIndex);
+		}
+		
+		int[] factionComponentIds = componentIds[factionIndex];
+		List<BitSet> reaches = componentReaches.get(factionIndex);
+		int originIndex = origin.getIndex();
+		
+		for (int k = board.getAdjacencyStart(originIndex);
+				k < board.getAdjacencyEnd(originIndex); k++) {
+			int adjacent = board.getAdjacentIndex(k);
+			accessibleLocations.set(adjacent);
+			
+			int componentId = factionComponentIds[adjacent];
+			
+			if (componentId != NO_COMPONENT) {
+				accessibleLocations.or(reaches.get(componentId));
+			}
+		}
+		
+		accessibleLocations.clear(originIndex);
+	}
+	
+	private void rebuild(int factionIndex) {
+		Faction faction = Faction.values()[factionIndex];
+		int[] factionComponentIds = componentIds[factionIndex];
+		List<BitSet> reaches = componentReaches.get(factionIndex);
+		
+		Arrays.fill(factionComponentIds, NO_COMPONENT);
+		reaches.clear();
+		
+		int[] unvisitedLocations = new int[board.getNumLocations()];
+		
+		for (int start = 0; start < locations.size(); start++) {
+			if (factionComponentIds[start] != NO_COMPONENT ||
+					!isTransporting(locations.get(start), faction)) {
+				continue;
+			}
+			
+			int componentId = reaches.size();
+			BitSet reach = new BitSet(board.getNumLocations());
+			reaches.add(reach);
+			
+			int head = 0;
+			int tail = 0;
+			
+			factionComponentIds[start] = componentId;
+			unvisitedLocations[tail++] = start;
+			
+			while (head < tail) {
+				int current = unvisitedLocations[head++];
+				reach.set(current);
+				
+				for (int k = board.getAdjacencyStart(current);
+						k < board.getAdjacencyEnd(current); k++) {
+					int adjacent = board.getAdjacentIndex(k);
+					reach.set(adjacent);
+					
+					if (factionComponentIds[adjacent] == NO_COMPONENT &&
+							isTransporting(locations.get(adjacent), faction)) {
+						factionComponentIds[adjacent] = componentId;
+						unvisitedLocations[tail++] = adjacent;
+					}
+				}
+			}
+		}
+		
+		isStale[factionIndex] = false;
+	}
+	
+	private static boolean isTransporting(Location location, Faction faction) {
+		return location.getTerrain() == Terrain.SEA &&
+				location.getOwner() == faction && location.hasUnits();
+	}
+}
@@ -0,0 +1,8 @@
+package com.boardgame.game;
+
+final class StandardCombatCard extends AbstractCombatCard {
+	StandardCombatCard(String name, int strength, int killingPotential, 
+			int deathDefense) {
+		super(name, strength, killingPotential, deathDefense);
+	}
+}
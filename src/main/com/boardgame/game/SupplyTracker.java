@@ -0,0 +1,200 @@
+package com.boardgame.game;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps, for every faction, the number of its armies of each size, updated
+ * as units are added to and removed from locations. Only armies of at least
+ * MIN_SUPPLY_CONSIDERATION units count against supply.
+ *
+ */
+final class SupplyTracker implements LocationObserver {
+	static final int MIN_SUPPLY_CONSIDERATION = 2;
+	
+	private static final int INITIAL_MAX_ARMY_SIZE = 8;
+	
+	//indexed by faction ordinal, then by army size
+	private final int[][] armySizeCounts;
+	private final int[] numArmies;
+	private final int[] maxArmySizes;
+	
+	SupplyTracker(Collection<Location> locations) {
+		assert locations != null;
+		
+		int numFactions = Faction.values().length;
+		
+		this.armySizeCounts = new int[numFactions][INITIAL_MAX_ARMY_SIZE + 1];
+		this.numArmies = new int[numFactions];
+		this.maxArmySizes = new int[numFactions];
+		
+		for (Location location : locations) {
+			Faction owner = location.getOwner();
+			
+			if (owner != null) {
+				addArmy(owner.ordinal(), location.getNumUnits());
+			}
+		}
+		
+		checkRep();
+	}
+	
+	@Override
+	public void unitsChanged(Location location, Faction owner,
+			int previousNumUnits) {
+		assert owner != null;
+		
+		removeArmy(owner.ordinal(), previousNumUnits);
+		addArmy(owner.ordinal(), location.getNumUnits());
+		
+		checkRep();
+	}
+	
+	@Override
+	public void ownerChanged(Location location, Faction previousOwner) {
+		//owners only change on locations without units
+		assert !location.hasUnits() || previousOwner == null;
+	}
+	
+	@Override
+	public void tokenChanged(Location location, 
+			AbstractActionToken previousToken) {
+		//tokens do not affect supply
+	}
+	
+	/**
+	 * @param supplyLimits  the faction's supply limits, sorted descending
+	 * @return whether the faction's armies fit its supply limits
+	 */
+	boolean isWithinSupply(Faction faction, List<Integer> supplyLimits) {
+		assert faction != null;
+		assert supplyLimits != null;
+		
+		int factionIndex = faction.ordinal();
+		
+		if (numArmies[factionIndex] > supplyLimits.size()) {
+			return false;
+		}
+		
+		int[] counts = armySizeCounts[factionIndex];
+		int supplyIndex = 0;
+		
+		for (int size = maxArmySizes[factionIndex];
+				size >= MIN_SUPPLY_CONSIDERATION; size--) {
+			int count = counts[size];
+			
+			if (count == 0) {
+				continue;
+			}
+			
+			supplyIndex += count;
+			
+			//the smallest limit these armies occupy
+			if (size > supplyLimits.get(supplyIndex - 1)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Checks supply as if numUnits units had moved from an army of
+	 * sourceSize units to an army of targetSize units of the same faction.
+	 * @param targetSize  the size of the target army, 0 if there is none
+	 */
+	boolean isWithinSupplyAfterMove(Faction faction,
+			List<Integer> supplyLimits, int sourceSize, int targetSize,
+			int numUnits) {
+		assert faction != null;
+		assert numUnits >= 0 && numUnits <= sourceSize;
+		assert targetSize >= 0;
+		
+		int factionIndex = faction.ordinal();
+		
+		removeArmy(factionIndex, sourceSize);
+		addArmy(factionIndex, sourceSize - numUnits);
+		removeArmy(factionIndex, targetSize);
+		addArmy(factionIndex, targetSize + numUnits);
+		
+		boolean result = isWithinSupply(faction, supplyLimits);
+		
+		removeArmy(factionIndex, targetSize + numUnits);
+		addArmy(factionIndex, targetSize);
+		removeArmy(factionIndex, sourceSize - numUnits);
+		addArmy(factionIndex, sourceSize);
+		
+		checkRep();
+		return result;
+	}
+	
+	/**
+	 * @return the largest number of units that can move from an army of
+	 * sourceSize units to an army of targetSize units of the same faction
+	 * without breaking supply, 0 if none can
+	 */
+	int findMaxMovableUnits(Faction faction, List<Integer> supplyLimits,
+			int sourceSize, int targetSize) {
+		for (int numUnits = sourceSize; numUnits > 0; numUnits--) {
+			if (isWithinSupplyAfterMove(faction, supplyLimits, sourceSize,
+					targetSize, numUnits)) {
+				return numUnits;
+			}
+		}
+		
+		return 0;
+	}
+	
+	private void addArmy(int factionIndex, int size) {
+		if (size < MIN_SUPPLY_CONSIDERATION) {
+			return;
+		}
+		
+		int[] counts = armySizeCounts[factionIndex];
+		
+		if (size >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(2 * counts.length, size + 1));
+			armySizeCounts[factionIndex] = counts;
+		}
+		
+		counts[size]++;
+		numArmies[factionIndex]++;
+		maxArmySizes[factionIndex] = Math.max(maxArmySizes[factionIndex], size);
+	}
+	
+	private void removeArmy(int factionIndex, int size) {
+		if (size < MIN_SUPPLY_CONSIDERATION) {
+			return;
+		}
+		
+		int[] counts = armySizeCounts[factionIndex];
+		
+		assert counts[size] > 0 : "Removing untracked army";
+		
+		counts[size]--;
+		numArmies[factionIndex]--;
+		
+		int maxArmySize = maxArmySizes[factionIndex];
+		
+		while (maxArmySize >= MIN_SUPPLY_CONSIDERATION &&
+				counts[maxArmySize] == 0) {
+			maxArmySize--;
+		}
+		
+		maxArmySizes[factionIndex] = maxArmySize;
+	}
+	
+	private void checkRep() {
+		for (int f = 0; f < numArmies.length; f++) {
+			int total = 0;
+			
+			for (int count : armySizeCounts[f]) {
+				assert count >= 0 : "Negative army count";
+				total += count;
+			}
+			
+			assert total == numArmies[f] : "Army count mismatch";
+		}
+	}
+}
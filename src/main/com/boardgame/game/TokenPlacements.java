@@ -0,0 +1,188 @@
+package com.boardgame.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Indexes the locations that have a token by the faction that owns them and
+ * the priority of their token, updated as tokens are placed and removed.
+ *
+ */
+final class TokenPlacements implements LocationObserver {
+	private final List<Location> locations;
+	
+	//indexed by faction ordinal
+	private final List<SortedMap<Integer, LocationIndexes>>
+		factionsToPrioritiesToLocations;
+	
+	//indexed by location index; null if the location is not indexed
+	private final LocationIndexes[] locationsToBuckets;
+	private final int[] positionsInBuckets;
+	
+	TokenPlacements(List<Location> locations) {
+		assert locations != null;
+		
+		int numFactions = Faction.values().length;
+		
+		this.locations = locations;
+		this.factionsToPrioritiesToLocations = new ArrayList<>(numFactions);
+		this.locationsToBuckets = new LocationIndexes[locations.size()];
+		this.positionsInBuckets = new int[locations.size()];
+		
+		for (int f = 0; f < numFactions; f++) {
+			factionsToPrioritiesToLocations.add(
+					new TreeMap<Integer, LocationIndexes>());
+		}
+		
+		for (Location location : locations) {
+			if (location.hasToken()) {
+				add(location);
+			}
+			
+			checkRep(location.getIndex());
+		}
+	}
+	
+	@Override
+	public void unitsChanged(Location location, Faction owner,
+			int previousNumUnits) {
+		//tokens are indexed by owner, which ownerChanged covers
+	}
+	
+	@Override
+	public void ownerChanged(Location location, Faction previousOwner) {
+		if (locationsToBuckets[location.getIndex()] == null) {
+			return;
+		}
+		
+		remove(location);
+		
+		if (location.getOwner() != null && location.hasToken()) {
+			add(location);
+		}
+		
+		checkRep(location.getIndex());
+	}
+	
+	@Override
+	public void tokenChanged(Location location,
+			AbstractActionToken previousToken) {
+		if (locationsToBuckets[location.getIndex()] != null) {
+			remove(location);
+		}
+		
+		if (location.hasToken()) {
+			add(location);
+		}
+		
+		checkRep(location.getIndex());
+	}
+	
+	/**
+	 * @return the priorities of the tokens of faction that have ever been
+	 * placed, in ascending order; some may have no locations
+	 */
+	Set<Integer> getPriorities(Faction faction) {
+		assert faction != null;
+		return factionsToPrioritiesToLocations.get(faction.ordinal()).keySet();
+	}
+	
+	/**
+	 * @return the number of locations owned by faction with a token of the
+	 * given priority
+	 */
+	int getNumLocations(Faction faction, int priority) {
+		LocationIndexes bucket = findBucket(faction, priority);
+		return bucket == null ? 0 : bucket.size;
+	}
+	
+	/**
+	 * @param i  at least 0 and less than getNumLocations(faction, priority)
+	 * @return the i-th location owned by faction with a token of the given
+	 * priority, in no particular order
+	 */
+	Location getLocation(Faction faction, int priority, int i) {
+		LocationIndexes bucket = findBucket(faction, priority);
+		
+		assert bucket != null;
+		assert i >= 0 && i < bucket.size;
+		
+		return locations.get(bucket.indexes[i]);
+	}
+	
+	private LocationIndexes findBucket(Faction faction, int priority) {
+		assert faction != null;
+		return factionsToPrioritiesToLocations.get(faction.ordinal())
+				.get(priority);
+	}
+	
+	private void add(Location location) {
+		assert location.getOwner() != null;
+		assert location.hasToken();
+		
+		SortedMap<Integer, LocationIndexes> prioritiesToLocations =
+				factionsToPrioritiesToLocations.get(
+						location.getOwner().ordinal());
+		int priority = location.getActionToken().getPriority();
+		LocationIndexes bucket = prioritiesToLocations.get(priority);
+		
+		if (bucket == null) {
+			bucket = new LocationIndexes();
+			prioritiesToLocations.put(priority, bucket);
+		}
+		
+		int index = location.getIndex();
+		
+		locationsToBuckets[index] = bucket;
+		positionsInBuckets[index] = bucket.size;
+		bucket.add(index);
+	}
+	
+	//moves the last location of the bucket into the removed one's position
+	private void remove(Location location) {
+		int index = location.getIndex();
+		LocationIndexes bucket = locationsToBuckets[index];
+		int position = positionsInBuckets[index];
+		
+		assert bucket != null;
+		assert bucket.indexes[position] == index;
+		
+		int lastIndex = bucket.indexes[bucket.size - 1];
+		bucket.indexes[position] = lastIndex;
+		positionsInBuckets[lastIndex] = position;
+		bucket.size--;
+		
+		locationsToBuckets[index] = null;
+	}
+	
+	private void checkRep(int index) {
+		LocationIndexes bucket = locationsToBuckets[index];
+		
+		assert (bucket != null) == locations.get(index).hasToken() :
+			"Index out of date";
+		
+		if (bucket != null) {
+			assert positionsInBuckets[index] < bucket.size :
+				"Position outside bucket";
+			assert bucket.indexes[positionsInBuckets[index]] == index :
+				"Wrong position";
+		}
+	}
+	
+	private static final class LocationIndexes {
+		private int[] indexes = new int[8];
+		private int size = 0;
+		
+		void add(int index) {
+			if (size == indexes.length) {
+				indexes = Arrays.copyOf(indexes, 2 * indexes.length);
+			}
+			
+			indexes[size++] = index;
+		}
+	}
+}
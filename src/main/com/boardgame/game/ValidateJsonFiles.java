@@ -1,57 +1,149 @@
 package com.boardgame.game;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.github.fge.jackson.JsonLoader;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.LogLevel;
+import com.github.fge.jsonschema.core.report.ProcessingMessage;
 import com.github.fge.jsonschema.core.report.ProcessingReport;
 import com.github.fge.jsonschema.main.JsonSchema;
 import com.github.fge.jsonschema.main.JsonSchemaFactory;
 
 class ValidateJsonFiles {
-	private static final String CONSTANT_SCHEMA_PATH = "res/boardSchema.json";
-	private static final String VARIABLE_SCHEMA_PATH = 
+	//found like the other files the game ships with; see GameStateLoader
+	static final String CONSTANT_SCHEMA_RESOURCE = 
+			"res/boardSchema.json";
+	static final String VARIABLE_SCHEMA_RESOURCE = 
 			"res/standardGame6Schema.json";
+	//the schema of one element of the location additions of a game state
+	private static final String LOCATION_ADDITION_POINTER = 
+			"/properties/locationAdditions/items";
 	
-	static boolean validateConstantGameState(String instancePath) {
-		assert instancePath != null : "Null instance path.";
+	private static final JsonSchemaFactory factory = 
+			JsonSchemaFactory.byDefault();
+	
+	//compiled schemas, by the name of their resource and their JSON pointer
+	//within it; JsonSchema is immutable, so they are shared by every thread
+	private static final Map<String, JsonSchema> schemas = 
+			new ConcurrentHashMap<>();
+	
+	/**
+	 * Compiles the schemas of the board and the game state files ahead of 
+	 * the first validation.
+	 * @throws IOException if a schema file can't be read
+	 * @throws ProcessingException if a schema file is not a valid schema
+	 */
+	static void prewarm() throws IOException, ProcessingException {
+		getSchema(CONSTANT_SCHEMA_RESOURCE);
+		getSchema(VARIABLE_SCHEMA_RESOURCE);
+		getSchema(VARIABLE_SCHEMA_RESOURCE, LOCATION_ADDITION_POINTER);
+	}
+	
+	/**
+	 * @param instance  the parsed contents of a board file, not null
+	 * @return a description of each way instance fails to match its schema,
+	 * empty if it matches
+	 */
+	static List<String> findConstantGameStateViolations(JsonNode instance) {
+		assert instance != null : "Null instance.";
 		
-		boolean isSuccess = false;
+		return findViolations(CONSTANT_SCHEMA_RESOURCE, "", instance, "");
+	}
+	
+	/**
+	 * @param instance  the parsed contents of a game state file, not null
+	 * @return a description of each way instance fails to match its schema,
+	 * empty if it matches
+	 */
+	static List<String> findVariableGameStateViolations(JsonNode instance) {
+		assert instance != null : "Null instance.";
 		
-		try {
-			isSuccess = validate(CONSTANT_SCHEMA_PATH, instancePath);
-		} catch (IOException | ProcessingException e) {}
+		return findViolations(VARIABLE_SCHEMA_RESOURCE, "", instance, "");
+	}
+	
+	/**
+	 * Validates one element of the location additions of a game state file 
+	 * on its own, so that they can be checked as they are streamed. The 
+	 * schema allows no other items in the array, so a game state whose 
+	 * additions all pass, and whose other fields pass with no additions, 
+	 * passes as a whole.
+	 * @param instance  the parsed location addition, not null
+	 * @param index  the index of instance in the location additions
+	 * @return a description of each way instance fails to match its schema,
+	 * empty if it matches
+	 */
+	static List<String> findLocationAdditionViolations(JsonNode instance, 
+			int index) {
+		assert instance != null : "Null instance.";
+		assert index >= 0 : "Negative index: " + index;
 		
-		return isSuccess;
+		return findViolations(VARIABLE_SCHEMA_RESOURCE, 
+				LOCATION_ADDITION_POINTER, instance, 
+				"/locationAdditions/" + index);
 	}
 	
-	static boolean validateVariableGameState(String instancePath) {
-		assert instancePath != null : "Null instance path.";
+	/**
+	 * @param instancePointer  the JSON pointer to instance within its file,
+	 * which prefixes the location of each violation
+	 */
+	private static List<String> findViolations(String schemaResource, 
+			String schemaPointer, JsonNode instance, String instancePointer) {
+		List<String> result = new ArrayList<>();
 		
-		boolean isSuccess = false;
-
 		try {
-			isSuccess = validate(VARIABLE_SCHEMA_PATH, instancePath);
-		} catch (IOException | ProcessingException e) {}
+			ProcessingReport report = getSchema(schemaResource, schemaPointer)
+					.validate(instance);
+			
+			for (ProcessingMessage message : report) {
+				if (message.getLogLevel().compareTo(LogLevel.ERROR) >= 0) {
+					String pointer = message.asJson().path("instance")
+							.path("pointer").asText();
+					result.add("\"" + instancePointer + pointer + "\": " + 
+							message.getMessage());
+				}
+			}
+			
+			if (!report.isSuccess() && result.isEmpty()) {
+				result.add("\"" + instancePointer + "\": does not match " + 
+						schemaResource);
+			}
+		} catch (IOException | ProcessingException e) {
+			result.add("Could not validate against " + schemaResource + 
+					": " + e.getMessage());
+		}
 		
-		return isSuccess;
+		return result;
 	}
 	
-	private static boolean validate(String schemaPath, String instancePath) 
+	private static JsonSchema getSchema(String schemaResource) 
 			throws IOException, ProcessingException {
-		assert schemaPath != null;
-		assert instancePath != null;
-		
-		JsonNode schemaNode = JsonLoader.fromPath(schemaPath);	
-		JsonNode instanceNode = JsonLoader.fromPath(instancePath);
-		
-		JsonSchemaFactory factory = JsonSchemaFactory.byDefault();
-		
-		JsonSchema schema = factory.getJsonSchema(schemaNode);
+		return getSchema(schemaResource, "");
+	}
+	
+	//compiles the schema at pointer in the resource schemaResource only the
+	//first time it is used
+	private static JsonSchema getSchema(String schemaResource, String pointer) 
+			throws IOException, ProcessingException {
+		String key = schemaResource + "#" + pointer;
+		JsonSchema result = schemas.get(key);
 		
-		ProcessingReport report = schema.validate(instanceNode);
+		if (result == null) {
+			JsonNode schemaNode = JsonLoader.fromURL(
+					GameStateLoader.findResource(schemaResource));
+			result = factory.getJsonSchema(schemaNode, pointer);
+			JsonSchema previous = schemas.putIfAbsent(key, result);
+			
+			if (previous != null) {
+				result = previous;
+			}
+		}
 		
-		return report.isSuccess();
+		return result;
 	}
 }
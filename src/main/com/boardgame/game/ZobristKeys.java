@@ -0,0 +1,145 @@
+package com.boardgame.game;
+
+import com.boardgame.game.AbstractUnit.UnitString;
+
+/**
+ * The keys of the Zobrist hash of a game. The hash of a game is the
+ * exclusive or of one key for each feature of its state, such as the
+ * number of a type of unit at a location or the cash in a player's hand, so
+ * a change to one feature updates the hash by xoring out the key of the old
+ * value and xoring in the key of the new one.
+ *
+ * Keys are derived from the feature and its value by a fixed mixing
+ * function instead of being drawn from tables, so that boards of any size
+ * need no tables and equal states hash equally in every process. A feature
+ * holding its empty value, such as a count of 0 or no owner, has key 0.
+ *
+ */
+final class ZobristKeys {
+	private static final long OWNER = 1;
+	private static final long UNITS = 2;
+	private static final long ROUTED_UNITS = 3;
+	private static final long TOKEN = 4;
+	private static final long CASH_IN_HAND = 5;
+	private static final long CASH_POOL = 6;
+	private static final long COMBAT_CARD_IN_HAND = 7;
+	private static final long COMBAT_CARD_DISCARD = 8;
+	private static final long UNIT_IN_HAND = 9;
+	private static final long TOKEN_IN_HAND = 10;
+	private static final long SPECIAL_TOKENS_USED = 11;
+	private static final long PLAYER = 12;
+	private static final long THREAT_LEVEL = 13;
+	private static final long ROUND = 14;
+	private static final long COMBAT_BONUS_USED = 15;
+	private static final long SIGHT_POWER_USED = 16;
+	private static final long PHASE = 17;
+	
+	private ZobristKeys() {
+		//not instantiable
+	}
+	
+	static long owner(int locationIndex, Faction owner) {
+		return owner == null ? 0 :
+			key(OWNER, locationIndex, owner.ordinal() + 1);
+	}
+	
+	static long units(int locationIndex, UnitString unitString, int count) {
+		return count == 0 ? 0 :
+			key(UNITS, locationIndex, unitString.ordinal(), count);
+	}
+	
+	static long routedUnits(int locationIndex, UnitString unitString,
+			int count) {
+		return count == 0 ? 0 :
+			key(ROUTED_UNITS, locationIndex, unitString.ordinal(), count);
+	}
+	
+	static long token(int locationIndex, AbstractActionToken token) {
+		return token == null ? 0 : key(TOKEN, locationIndex,
+				token.getTokenString().ordinal() + 1);
+	}
+	
+	static long cashInHand(int cash) {
+		return cash == 0 ? 0 : key(CASH_IN_HAND, cash);
+	}
+	
+	static long cashPool(int cash) {
+		return cash == 0 ? 0 : key(CASH_POOL, cash);
+	}
+	
+	//cards are keyed by name, which unlike identity is the same in every
+	//process
+	static long combatCardInHand(AbstractCombatCard card) {
+		return key(COMBAT_CARD_IN_HAND, card.getName().hashCode());
+	}
+	
+	static long combatCardDiscard(AbstractCombatCard card) {
+		return key(COMBAT_CARD_DISCARD, card.getName().hashCode());
+	}
+	
+	static long unitInHand(AbstractUnit unit) {
+		return key(UNIT_IN_HAND, unit.getUnitString().ordinal());
+	}
+	
+	static long tokenInHand(AbstractActionToken token) {
+		return key(TOKEN_IN_HAND, token.getTokenString().ordinal());
+	}
+	
+	static long specialTokensUsed(int numSpecialTokensUsed) {
+		return numSpecialTokensUsed == 0 ? 0 :
+			key(SPECIAL_TOKENS_USED, numSpecialTokensUsed);
+	}
+	
+	/**
+	 * @param playerHash  the hash of the player's own features, which do not
+	 * depend on the faction
+	 * @return the key of faction's player
+	 */
+	static long player(Faction faction, long playerHash) {
+		return key(PLAYER, faction.ordinal(), playerHash);
+	}
+	
+	static long threatLevel(int threatLevel) {
+		return key(THREAT_LEVEL, threatLevel);
+	}
+	
+	static long round(int round) {
+		return key(ROUND, round);
+	}
+	
+	static long hasCombatBonusBeenUsed(boolean hasCombatBonusBeenUsed) {
+		return hasCombatBonusBeenUsed ? key(COMBAT_BONUS_USED) : 0;
+	}
+	
+	static long hasSightPowerBeenUsed(boolean hasSightPowerBeenUsed) {
+		return hasSightPowerBeenUsed ? key(SIGHT_POWER_USED) : 0;
+	}
+	
+	static long phase(RoundPhase.Phase phase) {
+		return key(PHASE, phase.ordinal());
+	}
+	
+	private static long key(long feature) {
+		return mix(feature);
+	}
+	
+	private static long key(long feature, long a) {
+		return mix(key(feature) + a);
+	}
+	
+	private static long key(long feature, long a, long b) {
+		return mix(key(feature, a) + b);
+	}
+	
+	private static long key(long feature, long a, long b, long c) {
+		return mix(key(feature, a, b) + c);
+	}
+	
+	//the finalizer of SplitMix64, which spreads every input bit over the
+	//whole output
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}